@@ -0,0 +1,116 @@
+package com.example;
+
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.spi.VertxMetricsFactory;
+import io.vertx.core.spi.metrics.ClientMetrics;
+import io.vertx.core.spi.metrics.HttpServerMetrics;
+import io.vertx.core.spi.metrics.VertxMetrics;
+import io.vertx.core.spi.observability.HttpRequest;
+import io.vertx.core.spi.observability.HttpResponse;
+
+/**
+ * Vert.x metrics SPI implementation feeding {@link Metrics}.
+ *
+ * HTTP requests are labelled with the route that handled them (vertx-web reports
+ * every matched route; wildcard middleware routes such as "/api/*" are skipped so
+ * the last concrete path wins). The pg client reports each query on its
+ * connection with the SQL text as the URI, which gives per-statement timings.
+ */
+public class AppMetrics implements VertxMetricsFactory, VertxMetrics {
+    private static final String UNMATCHED = "unmatched";
+
+    private final Metrics metrics;
+
+    public AppMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public VertxMetrics metrics(VertxOptions options) {
+        return this;
+    }
+
+    @Override
+    public HttpServerMetrics<?, ?, ?> createHttpServerMetrics(HttpServerOptions options, SocketAddress localAddress) {
+        return new ServerMetrics(metrics);
+    }
+
+    @Override
+    public ClientMetrics<?, ?, ?, ?> createClientMetrics(SocketAddress remoteAddress, String type, String namespace) {
+        return "sql".equals(type) ? new SqlMetrics(metrics) : VertxMetrics.super.createClientMetrics(remoteAddress, type, namespace);
+    }
+
+    static final class RequestTiming {
+        final long start = System.nanoTime();
+        final String method;
+        String route = UNMATCHED;
+
+        RequestTiming(String method) {
+            this.method = method;
+        }
+    }
+
+    static final class ServerMetrics implements HttpServerMetrics<RequestTiming, Void, Void> {
+        private final Metrics metrics;
+
+        ServerMetrics(Metrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public RequestTiming requestBegin(Void socketMetric, HttpRequest request) {
+            return new RequestTiming(request.method().name());
+        }
+
+        @Override
+        public void requestRouted(RequestTiming timing, String route) {
+            if (route != null && !route.endsWith("*")) {
+                timing.route = route;
+            }
+        }
+
+        @Override
+        public void responseEnd(RequestTiming timing, HttpResponse response, long bytesWritten) {
+            metrics.route(timing.route, timing.method).record(response.statusCode(), System.nanoTime() - timing.start);
+        }
+
+        @Override
+        public void requestReset(RequestTiming timing) {
+            metrics.route(timing.route, timing.method).record(0, System.nanoTime() - timing.start);
+        }
+    }
+
+    static final class QueryTiming {
+        final long start = System.nanoTime();
+        final Metrics.StatementStats stats;
+
+        QueryTiming(Metrics.StatementStats stats) {
+            this.stats = stats;
+        }
+    }
+
+    static final class SqlMetrics implements ClientMetrics<QueryTiming, Void, Object, Object> {
+        private final Metrics metrics;
+
+        SqlMetrics(Metrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public QueryTiming requestBegin(String sql, Object request) {
+            return new QueryTiming(metrics.statement(sql));
+        }
+
+        @Override
+        public void responseEnd(QueryTiming timing) {
+            timing.stats.record(System.nanoTime() - timing.start, true);
+        }
+
+        @Override
+        public void requestReset(QueryTiming timing) {
+            timing.stats.record(System.nanoTime() - timing.start, false);
+        }
+    }
+}
@@ -8,21 +8,30 @@ import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.Tuple;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
 public class AuthHandler implements Handler<RoutingContext> {
+    private static final Logger log = LoggerFactory.getLogger(AuthHandler.class);
 
     private final PgPool dbClient;
+    private final UserCache userCache;
+    private final SessionTokens sessionTokens;
+    private final PasswordHasher passwordHasher;
 
-    public AuthHandler(Vertx vertx, PgPool dbClient) {
+    public AuthHandler(Vertx vertx, PgPool dbClient, UserCache userCache, SessionTokens sessionTokens,
+                       PasswordHasher passwordHasher) {
         this.dbClient = dbClient;
+        this.userCache = userCache;
+        this.sessionTokens = sessionTokens;
+        this.passwordHasher = passwordHasher;
     }
 
     @Override
     public void handle(RoutingContext ctx) {
         try {
-            System.out.println("\n=== NEW LOGIN REQUEST ===");
-            System.out.println("Headers: " + ctx.request().headers());
-            System.out.println("Raw body: " + ctx.getBodyAsString());
-            
             JsonObject body = ctx.getBodyAsJson();
 
             // 1. Validate input
@@ -36,8 +45,7 @@ public class AuthHandler implements Handler<RoutingContext> {
             String fullName = body.getString("full_name");
             String password = body.getString("password");
 
-            System.out.println("Extracted username: " + fullName);
-            System.out.println("Extracted password: " + (password != null ? "[hidden]" : "null"));
+            log.debug("login attempt", kv("username", fullName));
 
             if (fullName == null || fullName.isBlank()) {
                 sendError(ctx, 400, "Username is required");
@@ -54,7 +62,7 @@ public class AuthHandler implements Handler<RoutingContext> {
                 .execute(Tuple.of(fullName))
                 .onComplete(res -> {
                     if (res.failed()) {
-                        System.err.println("Database error: " + res.cause().getMessage());
+                        log.error("login lookup failed", kv("username", fullName), res.cause());
                         sendError(ctx, 500, "Database error");
                         return;
                     }
@@ -68,35 +76,63 @@ public class AuthHandler implements Handler<RoutingContext> {
                     processAuthentication(ctx, fullName, password, row);
                 });
         } catch (Exception e) {
-            System.err.println("Unexpected error in AuthHandler: " + e.getMessage());
+            log.error("login failed", e);
             sendError(ctx, 500, "Internal server error");
         }
     }
 
     private void processAuthentication(RoutingContext ctx, String fullName, String password, Row row) {
         try {
-            String storedPassword = row.getString("password").trim();
+            String rawPassword = row.getString("password");
+            String storedPassword = rawPassword.trim();
             String role = row.getString("role");
             Integer userId = row.getInteger("user_id");
-            
-            System.out.println("Database returned:");
-            System.out.println("Stored password: " + storedPassword);
-            System.out.println("Role: " + role);
-
-            // Direct comparison of passwords
-            if (!password.equals(storedPassword)) {
-                sendError(ctx, 401, "Invalid credentials");
-                return;
-            }
+
+            // bcrypt runs on the dedicated worker pool, never on the event loop
+            passwordHasher.verify(password, storedPassword).onComplete(verified -> {
+                if (verified.failed()) {
+                    sendHashingError(ctx, verified.cause());
+                    return;
+                }
+                switch (verified.result()) {
+                    case MISMATCH:
+                        sendError(ctx, 401, "Invalid credentials");
+                        return;
+                    case MATCH_NEEDS_REHASH:
+                        rehash(userId, password, rawPassword);
+                        break;
+                    default:
+                        break;
+                }
+                completeLogin(ctx, fullName, userId, role);
+            });
+        } catch (Exception e) {
+            log.error("password check failed", e);
+            sendError(ctx, 500, "Internal server error");
+        }
+    }
+
+    // Upgrades a plaintext (or lower-cost) password in place; the login itself does not wait for it
+    private void rehash(int userId, String password, String rawPassword) {
+        passwordHasher.hash(password)
+            .compose(hash -> dbClient.preparedQuery("UPDATE users SET password = $1 WHERE user_id = $2 AND password = $3")
+                .execute(Tuple.of(hash, userId, rawPassword)))
+            .onFailure(err -> log.warn("password rehash skipped", kv("user_id", userId), kv("reason", err.getMessage())));
+    }
+
+    private void completeLogin(RoutingContext ctx, String fullName, int userId, String role) {
+        try {
+            // Warm the cache for the "my tasks"/"my teams" calls that follow a login
+            userCache.put(fullName, userId, role);
 
             // Create response data
             JsonObject responseData = new JsonObject()
                 .put("user_id", userId)
                 .put("username", fullName)
-                .put("role", role);
-
-            // Only use session if it exists
-           
+                .put("role", role)
+                .put("token", sessionTokens.issue(userId, fullName, role))
+                .put("token_type", "Bearer")
+                .put("expires_in", sessionTokens.expiresInSeconds());
 
             // Return success with user info
             ctx.response()
@@ -104,13 +140,23 @@ public class AuthHandler implements Handler<RoutingContext> {
                 .end(responseData.encode());
                 
         } catch (Exception e) {
-            System.err.println("Error in processAuthentication: " + e.getMessage());
+            log.error("issuing session failed", e);
             sendError(ctx, 500, "Internal server error");
         }
     }
 
+    private void sendHashingError(RoutingContext ctx, Throwable err) {
+        if (err instanceof PasswordHasher.Overloaded) {
+            ctx.response().putHeader("Retry-After", "1");
+            sendError(ctx, 503, "Too many login attempts in progress, retry shortly");
+            return;
+        }
+        log.error("password verification failed", err);
+        sendError(ctx, 500, "Internal server error");
+    }
+
     private void sendError(RoutingContext ctx, int code, String message) {
-        System.err.println("Sending error: " + code + " - " + message);
+        log.debug("login rejected", kv("status", code), kv("error", message));
         ctx.response()
             .setStatusCode(code)
             .putHeader("Content-Type", "application/json")
@@ -0,0 +1,247 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Content-addressed document storage under uploads/.
+ *
+ * Uploads are hashed (SHA-256) while they stream into uploads/tmp. Each distinct
+ * content is kept once, at blobs/<aa>/<bb>/<sha256> (the first two bytes of the
+ * hash fan the files out over 65536 directories), and document_blobs counts the
+ * tasks that point at it; the count is kept by a trigger on tasks (see
+ * V5__document_blobs.sql). A re-upload of known content discards its temp file,
+ * and a client that sends the hash up front in X-Content-SHA256 has known content
+ * hashed in flight without being written to disk at all.
+ *
+ * The blob row is locked for the whole attaching transaction and the file is
+ * hard-linked into place before it commits, so a blob row always has its file.
+ * The temp file goes only once the commit succeeded; when it fails, the link is
+ * removed again unless a row for the content exists after all.
+ * Blobs left without references for BLOB_GC_GRACE_SECONDS are deleted by {@link #collectGarbage}.
+ */
+public class BlobStore {
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+
+    static final String ROOT = "uploads";
+    static final String TMP_DIR = ROOT + "/tmp";
+    static final String HASH_HEADER = "X-Content-SHA256";
+    private static final int GC_BATCH = 100;
+
+    private static final String EXISTS = "SELECT 1 FROM document_blobs WHERE sha256 = $1";
+
+    // Per-content lock ("blob" in the first key) serialising store() with the cleanup of a failed one
+    private static final String LOCK = "SELECT pg_advisory_xact_lock(1651273570, hashtext($1))";
+
+    // Inserts or locks the row; xmax is 0 only for a row this statement inserted
+    private static final String UPSERT = """
+        INSERT INTO document_blobs (sha256, size) VALUES ($1, $2)
+        ON CONFLICT (sha256) DO UPDATE SET size = EXCLUDED.size
+        RETURNING (xmax = 0) AS inserted""";
+
+    private static final String UNREFERENCED = """
+        SELECT sha256 FROM document_blobs
+        WHERE ref_count = 0 AND COALESCE(released_at, created_at) < now() - make_interval(secs => $1)
+        ORDER BY COALESCE(released_at, created_at)
+        LIMIT $2
+        FOR UPDATE SKIP LOCKED""";
+
+    /** The blob disappeared between the X-Content-SHA256 check and the attach; the client should resend. */
+    public static class Gone extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Gone() {
+            super("Stored content was removed during the upload; retry without " + HASH_HEADER);
+        }
+    }
+
+    // Rolls back a store() whose attach found nothing to attach to
+    private static final RuntimeException NOT_ATTACHED = new RuntimeException("nothing attached", null, false, false) { };
+
+    private final PgPool dbClient;
+    private final FileSystem fs;
+
+    public BlobStore(PgPool dbClient, Vertx vertx) {
+        this.dbClient = dbClient;
+        this.fs = vertx.fileSystem();
+    }
+
+    /** Storage path of a blob, relative to uploads/: blobs/<aa>/<bb>/<sha256>. */
+    static String path(String sha256) {
+        return "blobs/" + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256;
+    }
+
+    /** Whether a tasks.document_path names a blob rather than a file from before content addressing. */
+    static boolean isBlob(String documentPath) {
+        return documentPath.startsWith("blobs/");
+    }
+
+    /**
+     * Receives a multipart upload, hashing it. With a known X-Content-SHA256 the
+     * content is only hashed; otherwise it lands in uploads/tmp. Either way the
+     * declared hash, if any, must match.
+     */
+    public Future<MultipartUpload.Received> receive(RoutingContext ctx) {
+        String declared = ctx.request().getHeader(HASH_HEADER);
+        if (declared == null) {
+            return MultipartUpload.receive(ctx, TMP_DIR, MultipartUpload.MAX_BYTES);
+        }
+        String expected = declared.trim().toLowerCase(Locale.ROOT);
+        if (!expected.matches("[0-9a-f]{64}")) {
+            return Future.failedFuture(new IllegalArgumentException(HASH_HEADER + " must be 64 hex digits"));
+        }
+
+        HttpServerRequest request = ctx.request();
+        // Hold the body while we look the hash up
+        request.pause();
+        return dbClient.preparedQuery(EXISTS).execute(Tuple.of(expected))
+            .compose(rows -> {
+                Future<MultipartUpload.Received> upload =
+                    MultipartUpload.receive(ctx, rows.size() > 0 ? null : TMP_DIR, MultipartUpload.MAX_BYTES);
+                request.resume();
+                return upload;
+            }, err -> {
+                request.resume();
+                return Future.failedFuture(err);
+            })
+            .compose(upload -> {
+                if (upload.sha256.equals(expected)) {
+                    return Future.succeededFuture(upload);
+                }
+                discard(upload);
+                return Future.failedFuture(new IllegalArgumentException("Uploaded content does not match " + HASH_HEADER));
+            });
+    }
+
+    /**
+     * Stores a received upload and runs {@code attach} with its blob path in the
+     * same transaction. Completes with attach's result and whether the content was
+     * already stored, and the temp file gone. When attach completes with null
+     * (nothing to attach to) the transaction is rolled back and nothing is stored.
+     * On failure the temp file is left for the caller to {@link #discard} or retry.
+     */
+    public <T> Future<Stored<T>> store(MultipartUpload.Received upload,
+                                       BiFunction<SqlConnection, String, Future<T>> attach) {
+        String blobPath = path(upload.sha256);
+        String target = ROOT + "/" + blobPath;
+        AtomicBoolean linked = new AtomicBoolean();
+        return dbClient.withTransaction(conn -> conn.preparedQuery(LOCK).execute(Tuple.of(upload.sha256))
+                .compose(locked -> conn.preparedQuery(UPSERT).execute(Tuple.of(upload.sha256, upload.size)))
+                .compose(rows -> {
+                    boolean inserted = rows.iterator().next().getBoolean("inserted");
+                    if (inserted && upload.path == null) {
+                        return Future.failedFuture(new Gone());
+                    }
+                    return attach.apply(conn, blobPath).compose(result -> {
+                        if (result == null) {
+                            return Future.failedFuture(NOT_ATTACHED);
+                        }
+                        if (!inserted) {
+                            return Future.succeededFuture(new Stored<>(result, true));
+                        }
+                        // Into place while the row is still locked. A file already there has no row:
+                        // the remains of a store whose cleanup failed
+                        return fs.mkdirs(target.substring(0, target.lastIndexOf('/')))
+                            .compose(v -> fs.exists(target))
+                            .compose(stale -> stale ? fs.delete(target) : Future.succeededFuture())
+                            .compose(v -> fs.link(target, upload.path))
+                            .onSuccess(v -> linked.set(true))
+                            .map(v -> new Stored<>(result, false));
+                    });
+                }))
+            .recover(err -> {
+                if (err == NOT_ATTACHED) {
+                    return Future.succeededFuture(new Stored<>(null, false));
+                }
+                Future<Void> cleaned = linked.get() ? unlink(upload.sha256, target) : Future.succeededFuture();
+                return cleaned.transform(v -> Future.failedFuture(err));
+            })
+            .onSuccess(stored -> discard(upload));
+    }
+
+    /**
+     * Removes the link a failed store() made, unless a row for the content exists
+     * after all: a COMMIT that failed on the wire may still have gone through, and
+     * another upload may have stored the same content since.
+     */
+    private Future<Void> unlink(String sha256, String target) {
+        return dbClient.withTransaction(conn -> conn.preparedQuery(LOCK).execute(Tuple.of(sha256))
+                .compose(locked -> conn.preparedQuery(EXISTS).execute(Tuple.of(sha256)))
+                .compose(rows -> rows.size() > 0 ? Future.<Void>succeededFuture() : fs.delete(target)))
+            .onFailure(err -> log.warn("blob file of a failed upload not removed; the next upload of the content replaces it",
+                kv("sha256", sha256), err));
+    }
+
+    /** Result of {@link #store}: attach's result (null when nothing was attached) and whether the blob already existed. */
+    public static final class Stored<T> {
+        public final T value;
+        public final boolean deduplicated;
+
+        Stored(T value, boolean deduplicated) {
+            this.value = value;
+            this.deduplicated = deduplicated;
+        }
+    }
+
+    /** Deletes whatever temp file is left of an upload; a no-op when there is none. */
+    public void discard(MultipartUpload.Received upload) {
+        if (upload.path != null) {
+            fs.exists(upload.path).onSuccess(exists -> {
+                if (exists) {
+                    fs.delete(upload.path);
+                }
+            });
+        }
+    }
+
+    /**
+     * Deletes up to one batch of blobs that have had no references for {@code graceSeconds}.
+     * Rows are locked while their files go, so a concurrent upload of the same content
+     * waits and then stores it afresh. Completes with the number removed.
+     */
+    public Future<Integer> collectGarbage(int graceSeconds) {
+        return dbClient.withTransaction(conn -> conn.preparedQuery(UNREFERENCED)
+            .execute(Tuple.of(graceSeconds, GC_BATCH))
+            .compose(rows -> {
+                List<String> hashes = new ArrayList<>();
+                for (Row row : rows) {
+                    hashes.add(row.getString("sha256"));
+                }
+                if (hashes.isEmpty()) {
+                    return Future.succeededFuture(0);
+                }
+                List<Future<Void>> deletes = new ArrayList<>();
+                for (String hash : hashes) {
+                    String file = ROOT + "/" + path(hash);
+                    deletes.add(fs.exists(file).compose(exists -> exists ? fs.delete(file) : Future.succeededFuture()));
+                }
+                return Future.all(deletes)
+                    .compose(v -> conn.preparedQuery("DELETE FROM document_blobs WHERE sha256 = ANY($1)")
+                        .execute(Tuple.tuple().addArrayOfString(hashes.toArray(new String[0]))))
+                    .map(deleted -> deleted.rowCount());
+            }))
+            .onSuccess(removed -> {
+                if (removed > 0) {
+                    log.info("unreferenced document blobs removed", kv("blobs", removed));
+                }
+            });
+    }
+}
@@ -0,0 +1,108 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Publishes entity changes on the event bus for {@link ChangeStream} to push to clients.
+ *
+ * Every change is tagged with the topics it concerns ("project:3", "team:5",
+ * "user:7"): a task with its project and assignee (before and after, when they
+ * change), a project with itself and its manager, a team with itself and its
+ * project, a membership change with the team and each affected user. The event
+ * is encoded once here; each event loop only wraps the text in an SSE frame.
+ *
+ * Message body: {"topics": [...], "entity": "task", "event": "{...}"}.
+ *
+ * Task and project changes are also handed to {@link ChangeNotifier}, which tells
+ * the other replicas so they can update their caches.
+ */
+public class ChangeEvents {
+    static final String ADDRESS = "pm.changes";
+
+    private final Vertx vertx;
+    private final ChangeNotifier notifier;
+
+    public ChangeEvents(Vertx vertx, ChangeNotifier notifier) {
+        this.vertx = vertx;
+        this.notifier = notifier;
+    }
+
+    /**
+     * A task row as returned by the handlers. For updates the previous values are the
+     * pre-update ones (equal to the current ones when unchanged); for creates and
+     * deletes they are null.
+     */
+    public void task(String op, JsonObject task, String previousStatus, Integer previousProjectId,
+                     Integer previousAssignee) {
+        Set<String> topics = new LinkedHashSet<>();
+        addTopic(topics, "project", task.getValue("project_id"));
+        addTopic(topics, "project", previousProjectId);
+        addTopic(topics, "user", task.getValue("assigned_to"));
+        addTopic(topics, "user", previousAssignee);
+        publish("task", op, task.getValue("task_id"), task, topics);
+        if ("deleted".equals(op)) {
+            notifier.task(op, task.getValue("task_id"), task.getString("status"), null, task.getInteger("project_id"), null);
+        } else {
+            notifier.task(op, task.getValue("task_id"), previousStatus, task.getString("status"),
+                previousProjectId, task.getInteger("project_id"));
+        }
+    }
+
+    /** A project row; previousStatus as for {@link #task}. */
+    public void project(String op, JsonObject project, String previousStatus) {
+        Set<String> topics = new LinkedHashSet<>();
+        addTopic(topics, "project", project.getValue("project_id"));
+        addTopic(topics, "user", project.getValue("project_manager_id"));
+        publish("project", op, project.getValue("project_id"), project, topics);
+        if ("deleted".equals(op)) {
+            notifier.project(op, project.getValue("project_id"), project.getString("status"), null);
+        } else {
+            notifier.project(op, project.getValue("project_id"), previousStatus, project.getString("status"));
+        }
+    }
+
+    public void team(String op, JsonObject team) {
+        Set<String> topics = new LinkedHashSet<>();
+        addTopic(topics, "team", team.getValue("team_id"));
+        addTopic(topics, "project", team.getValue("project_id"));
+        publish("team", op, team.getValue("team_id"), team, topics);
+    }
+
+    /** Membership of {@code userIds} in a team was added, updated or removed. */
+    public void teamMembers(String op, int teamId, JsonArray userIds) {
+        Set<String> topics = new LinkedHashSet<>();
+        addTopic(topics, "team", teamId);
+        for (int i = 0; i < userIds.size(); i++) {
+            addTopic(topics, "user", userIds.getValue(i));
+        }
+        publish("team_member", op, teamId, new JsonObject().put("team_id", teamId).put("user_ids", userIds), topics);
+    }
+
+    private static void addTopic(Set<String> topics, String kind, Object id) {
+        if (id != null) {
+            topics.add(kind + ":" + id);
+        }
+    }
+
+    private void publish(String entity, String op, Object id, JsonObject data, Set<String> topics) {
+        if (topics.isEmpty()) {
+            return;
+        }
+        String event = new JsonObject()
+            .put("entity", entity)
+            .put("op", op)
+            .put("id", id)
+            .put("data", data)
+            .encode();
+        vertx.eventBus().publish(ADDRESS, new JsonObject()
+            .put("topics", new JsonArray(new ArrayList<>(topics)))
+            .put("entity", entity)
+            .put("event", event));
+    }
+}
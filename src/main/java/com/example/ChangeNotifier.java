@@ -0,0 +1,172 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.pgclient.pubsub.PgSubscriber;
+import io.vertx.sqlclient.Tuple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Keeps the per-node caches of every replica in step through Postgres LISTEN/NOTIFY.
+ *
+ * Writes send a compact message on the pm_changes channel: the sending node, the
+ * entity, the operation, the id, and for tasks and projects the status (and
+ * project) before and after, e.g.
+ * {"n":"3f9c1a2b","e":"task","o":"updated","i":30,"s":["Pending","Done"],"p":[11,12]}.
+ * Every other node applies it to its own StatusCounts, ProjectRisk and UserCache
+ * exactly as the writing node already did; the sender skips its own messages.
+ * Messages queued in the same event-loop tick go out in one pg_notify round trip.
+ *
+ * The subscriber holds its own connection, outside the pool, and reconnects with
+ * backoff. NOTIFY is not replayed, so every re-subscription after the first
+ * resynchronizes all caches from the database.
+ */
+public class ChangeNotifier {
+    private static final Logger log = LoggerFactory.getLogger(ChangeNotifier.class);
+
+    static final String CHANNEL = "pm_changes";
+    private static final String SEND = "SELECT pg_notify($1, payload) FROM unnest($2::text[]) AS payload";
+
+    private final Vertx vertx;
+    private final PgPool dbClient;
+    private final StatusCounts taskStatusCounts;
+    private final StatusCounts projectStatusCounts;
+    private final UserCache userCache;
+    private final ProjectRisk projectRisk;
+    private final String node = UUID.randomUUID().toString().substring(0, 8);
+    private final ConcurrentLinkedQueue<String> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private boolean subscribed;
+
+    public ChangeNotifier(Vertx vertx, PgPool dbClient, StatusCounts taskStatusCounts,
+                          StatusCounts projectStatusCounts, UserCache userCache, ProjectRisk projectRisk) {
+        this.vertx = vertx;
+        this.dbClient = dbClient;
+        this.taskStatusCounts = taskStatusCounts;
+        this.projectStatusCounts = projectStatusCounts;
+        this.userCache = userCache;
+        this.projectRisk = projectRisk;
+    }
+
+    /** Connects and listens; completes once the first LISTEN is in place. */
+    public Future<Void> start() {
+        long maxBackoffMs = DatabasePool.envInt("NOTIFY_RECONNECT_MAX_MS", 10_000);
+        PgSubscriber subscriber = PgSubscriber.subscriber(vertx, DatabasePool.connectOptions())
+            // Never give up: 100 ms, doubling up to NOTIFY_RECONNECT_MAX_MS
+            .reconnectPolicy(retries -> Math.min(maxBackoffMs, 100L << Math.min(retries, 16)));
+        subscriber.channel(CHANNEL)
+            .subscribeHandler(v -> onSubscribed())
+            .handler(this::receive);
+        return subscriber.connect();
+    }
+
+    private synchronized void onSubscribed() {
+        if (!subscribed) {
+            subscribed = true;
+            log.info("listening for changes", kv("channel", CHANNEL), kv("node", node));
+            return;
+        }
+        // Anything sent while we were away is lost: rebuild every cache from the database
+        log.info("change notifications resubscribed; resyncing caches", kv("node", node));
+        userCache.invalidateAll();
+        projectRisk.requestRefresh();
+        taskStatusCounts.reconcile().onFailure(err -> log.warn("task status resync failed", err));
+        projectStatusCounts.reconcile().onFailure(err -> log.warn("project status resync failed", err));
+    }
+
+    public void task(String op, Object taskId, String previousStatus, String status,
+                     Integer previousProjectId, Integer projectId) {
+        send(message("task", op, taskId)
+            .put("s", new JsonArray().add(previousStatus).add(status))
+            .put("p", new JsonArray().add(previousProjectId).add(projectId)));
+    }
+
+    public void project(String op, Object projectId, String previousStatus, String status) {
+        send(message("project", op, projectId).put("s", new JsonArray().add(previousStatus).add(status)));
+    }
+
+    /** {@code fullName} is the name the user now has, whose cached lookup is stale too; null on delete. */
+    public void user(String op, int userId, String fullName) {
+        JsonObject message = message("user", op, userId);
+        if (fullName != null) {
+            message.put("f", fullName);
+        }
+        send(message);
+    }
+
+    private JsonObject message(String entity, String op, Object id) {
+        return new JsonObject().put("n", node).put("e", entity).put("o", op).put("i", id);
+    }
+
+    private void send(JsonObject message) {
+        outbox.add(message.encode());
+        if (flushScheduled.compareAndSet(false, true)) {
+            vertx.runOnContext(v -> flush());
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        List<String> payloads = new ArrayList<>();
+        for (String payload; (payload = outbox.poll()) != null; ) {
+            payloads.add(payload);
+        }
+        if (payloads.isEmpty()) {
+            return;
+        }
+        dbClient.preparedQuery(SEND)
+            .execute(Tuple.of(CHANNEL).addArrayOfString(payloads.toArray(new String[0])))
+            .onFailure(err -> log.warn("change notification failed; other nodes catch up on their next reconcile",
+                kv("messages", payloads.size()), err));
+    }
+
+    private void receive(String payload) {
+        JsonObject message;
+        try {
+            message = new JsonObject(payload);
+        } catch (DecodeException e) {
+            log.warn("ignoring malformed change notification", kv("payload", payload));
+            return;
+        }
+        if (node.equals(message.getString("n"))) {
+            return;
+        }
+        String entity = message.getString("e", "");
+        JsonArray status = message.getJsonArray("s");
+        JsonArray projects = message.getJsonArray("p");
+        switch (entity) {
+            case "task":
+                taskStatusCounts.move(status.getString(0), status.getString(1));
+                projectRisk.markDirty(projects.getInteger(0), projects.getInteger(1));
+                break;
+            case "project":
+                projectStatusCounts.move(status.getString(0), status.getString(1));
+                projectRisk.markDirty(message.getInteger("i"));
+                if ("deleted".equals(message.getString("o"))) {
+                    // The delete cascaded to the project's tasks, as the writing node also recounts
+                    taskStatusCounts.reconcile().onFailure(err -> log.warn("task status reconcile failed", err));
+                }
+                break;
+            case "user":
+                userCache.invalidateUser(message.getInteger("i"));
+                userCache.invalidate(message.getString("f"));
+                break;
+            default:
+                log.debug("ignoring change notification", kv("entity", entity));
+        }
+    }
+}
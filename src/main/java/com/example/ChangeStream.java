@@ -0,0 +1,193 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * GET /api/events: Server-Sent Events for the changes published by {@link ChangeEvents}.
+ *
+ * Callers must be authenticated. They subscribe with project, team and user (each a
+ * number or a comma-separated list); with none of them they get their own user
+ * topic. Only PMs and admins may follow other users. Each
+ * event is one "event: <entity>" frame whose data is {"entity", "op", "id", "data"}.
+ * There is no replay: a client that reconnects should refetch what it shows.
+ *
+ * One instance per MainVerticle, confined to its event loop, so nothing here is
+ * synchronized. An idle subscriber is its response plus a small record in the
+ * topic index; there is no per-connection timer or buffer, and one heartbeat
+ * timer per event loop keeps proxies from closing quiet streams. A subscriber
+ * whose write queue is full is disconnected rather than buffered for.
+ */
+public class ChangeStream {
+    private static final Logger log = LoggerFactory.getLogger(ChangeStream.class);
+
+    private static final int MAX_TOPICS = 50;
+    private static final Buffer OPEN = Buffer.buffer("retry: 5000\n\n");
+    private static final Buffer HEARTBEAT = Buffer.buffer(":\n\n");
+
+    private static final class Subscriber {
+        final HttpServerResponse response;
+        final String[] topics;
+        // Sequence of the last event written, so a subscriber matching several topics gets it once
+        long lastEvent;
+
+        Subscriber(HttpServerResponse response, String[] topics) {
+            this.response = response;
+            this.topics = topics;
+        }
+    }
+
+    private final Vertx vertx;
+    private final Map<String, Set<Subscriber>> byTopic = new HashMap<>();
+    private final Set<Subscriber> subscribers = new HashSet<>();
+    private long sequence;
+
+    public ChangeStream(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /** Registers the event bus consumer and heartbeat on the calling verticle's context. */
+    public void start() {
+        vertx.eventBus().<JsonObject>localConsumer(ChangeEvents.ADDRESS, this::deliver);
+        long heartbeatMs = DatabasePool.envInt("SSE_HEARTBEAT_SECONDS", 25) * 1000L;
+        vertx.setPeriodic(heartbeatMs, id -> {
+            List<Subscriber> slow = new ArrayList<>();
+            for (Subscriber subscriber : subscribers) {
+                write(subscriber, HEARTBEAT, slow);
+            }
+            slow.forEach(this::drop);
+        });
+    }
+
+    public void subscribe(RoutingContext ctx) {
+        Set<String> topics = new LinkedHashSet<>();
+        try {
+            addTopics(topics, "project", ctx.request().getParam("project"));
+            addTopics(topics, "team", ctx.request().getParam("team"));
+            addTopics(topics, "user", ctx.request().getParam("user"));
+        } catch (IllegalArgumentException e) {
+            Pagination.sendBadRequest(ctx, e);
+            return;
+        }
+        Integer self = SessionTokens.userId(ctx);
+        String role = SessionTokens.role(ctx);
+        if (!"pm".equals(role) && !"admin".equals(role)) {
+            for (String topic : topics) {
+                if (topic.startsWith("user:") && !topic.equals("user:" + self)) {
+                    ctx.response()
+                        .setStatusCode(403)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("error", "Forbidden: Only PMs and Admins can follow other users").encode());
+                    return;
+                }
+            }
+        }
+        if (topics.isEmpty() && self != null) {
+            topics.add("user:" + self);
+        }
+        if (topics.isEmpty()) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("Subscribe to at least one project, team or user"));
+            return;
+        }
+        if (topics.size() > MAX_TOPICS) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("At most " + MAX_TOPICS + " topics per stream"));
+            return;
+        }
+
+        HttpServerResponse response = ctx.response()
+            .setChunked(true)
+            .putHeader("Content-Type", "text/event-stream")
+            .putHeader("Cache-Control", "no-cache")
+            .putHeader("X-Accel-Buffering", "no");
+        Subscriber subscriber = new Subscriber(response, topics.toArray(new String[0]));
+        subscribers.add(subscriber);
+        for (String topic : subscriber.topics) {
+            byTopic.computeIfAbsent(topic, t -> new HashSet<>()).add(subscriber);
+        }
+        response.closeHandler(v -> remove(subscriber));
+        response.write(OPEN);
+    }
+
+    private static void addTopics(Set<String> topics, String kind, String param) {
+        if (param == null || param.isEmpty()) {
+            return;
+        }
+        for (String id : param.split(",")) {
+            try {
+                topics.add(kind + ":" + Integer.parseInt(id.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(kind + " must be a number or a comma-separated list of numbers");
+            }
+        }
+    }
+
+    private void deliver(Message<JsonObject> message) {
+        JsonObject body = message.body();
+        JsonArray topics = body.getJsonArray("topics");
+        long event = ++sequence;
+        Buffer frame = null;
+        List<Subscriber> slow = new ArrayList<>();
+        for (int i = 0; i < topics.size(); i++) {
+            Set<Subscriber> matching = byTopic.get(topics.getString(i));
+            if (matching == null) {
+                continue;
+            }
+            for (Subscriber subscriber : matching) {
+                if (subscriber.lastEvent == event) {
+                    continue;
+                }
+                subscriber.lastEvent = event;
+                if (frame == null) {
+                    frame = Buffer.buffer("event: " + body.getString("entity") + "\ndata: " + body.getString("event") + "\n\n");
+                }
+                write(subscriber, frame, slow);
+            }
+        }
+        slow.forEach(this::drop);
+    }
+
+    private static void write(Subscriber subscriber, Buffer frame, List<Subscriber> slow) {
+        if (subscriber.response.writeQueueFull()) {
+            slow.add(subscriber);
+            return;
+        }
+        subscriber.response.write(frame);
+    }
+
+    private void drop(Subscriber subscriber) {
+        log.debug("dropping slow event subscriber", kv("topics", subscriber.topics.length));
+        remove(subscriber);
+        // Closes the connection (HTTP/1.1) or just this stream (HTTP/2)
+        subscriber.response.reset();
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        for (String topic : subscriber.topics) {
+            Set<Subscriber> matching = byTopic.get(topic);
+            if (matching != null && matching.remove(subscriber) && matching.isEmpty()) {
+                byTopic.remove(topic);
+            }
+        }
+    }
+}
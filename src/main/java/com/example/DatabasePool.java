@@ -0,0 +1,95 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Builds the single PgPool shared by every MainVerticle instance.
+ *
+ * Sizing model (all values can be overridden through environment variables):
+ * - DB_POOL_MAX_SIZE: connections held by this process. Defaults to two per
+ *   event-loop instance, clamped to [4, 32], so a 16-core box does not open
+ *   more connections than Postgres can usefully run in parallel.
+ * - DB_POOL_MAX_WAIT_QUEUE: requests allowed to wait for a connection before
+ *   the pool fails fast. Defaults to 16 waiters per connection.
+ * - DB_POOL_IDLE_TIMEOUT: seconds before an idle connection is closed.
+ * - DB_PIPELINING_LIMIT: commands pipelined on a single connection.
+ * - DB_PREPARED_STATEMENT_CACHE_SIZE: prepared statements kept per connection
+ *   (LRU, keyed by SQL text), so a repeated query skips the Parse step.
+ */
+public class DatabasePool {
+    private static final Logger log = LoggerFactory.getLogger(DatabasePool.class);
+
+    public static final String POOL_NAME = "pm-backend-pool";
+
+    private DatabasePool() {
+    }
+
+    public static PgPool create(Vertx vertx, int eventLoops, Metrics metrics) {
+        return create(vertx, connectOptions(), eventLoops, metrics);
+    }
+
+    static PgPool create(Vertx vertx, PgConnectOptions connectOptions, int eventLoops, Metrics metrics) {
+        int maxSize = envInt("DB_POOL_MAX_SIZE", Math.max(4, Math.min(32, eventLoops * 2)));
+
+        PoolOptions poolOptions = new PoolOptions()
+            .setName(POOL_NAME)
+            .setShared(true)
+            .setEventLoopSize(eventLoops)
+            .setMaxSize(maxSize)
+            .setMaxWaitQueueSize(envInt("DB_POOL_MAX_WAIT_QUEUE", maxSize * 16))
+            .setIdleTimeout(envInt("DB_POOL_IDLE_TIMEOUT", 300))
+            .setIdleTimeoutUnit(TimeUnit.SECONDS)
+            .setPoolCleanerPeriod(1000);
+
+        log.info("PgPool configured", kv("pool", POOL_NAME), kv("max_size", poolOptions.getMaxSize()),
+            kv("max_wait_queue", poolOptions.getMaxWaitQueueSize()), kv("idle_timeout_s", poolOptions.getIdleTimeout()),
+            kv("pipelining_limit", connectOptions.getPipeliningLimit()),
+            kv("statement_cache", connectOptions.getPreparedStatementCacheMaxSize()), kv("event_loops", eventLoops));
+
+        PgPool pool = PgPool.pool(vertx, connectOptions, poolOptions);
+        MeteredConnectionPool.install(pool, metrics, maxSize);
+        return pool;
+    }
+
+    /** Connection settings for the pool, and for connections held outside it (ChangeNotifier). */
+    static PgConnectOptions connectOptions() {
+        return new PgConnectOptions()
+            .setPort(envInt("DB_PORT", 5432))
+            .setHost(env("DB_HOST", "localhost"))
+            .setDatabase(env("DB_NAME", "project_management"))
+            .setUser(env("DB_USER", "postgres"))
+            .setPassword(env("DB_PASSWORD", "yourpassword"))
+            .setConnectTimeout(5000)
+            .setPipeliningLimit(envInt("DB_PIPELINING_LIMIT", 256))
+            .setCachePreparedStatements(true)
+            .setPreparedStatementCacheMaxSize(envInt("DB_PREPARED_STATEMENT_CACHE_SIZE", 256));
+    }
+
+    static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+
+    static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("ignoring invalid setting", kv("name", name), kv("value", value), kv("default", defaultValue));
+            return defaultValue;
+        }
+    }
+}
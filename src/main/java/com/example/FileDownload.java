@@ -0,0 +1,331 @@
+package com.example;
+
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.FileProps;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Sends a stored file as a cacheable, range-aware download.
+ *
+ * Every response carries a strong ETag, Last-Modified and Accept-Ranges, and the
+ * recorded Content-Type or one guessed from the client's file name. If-None-Match (or, without
+ * it, If-Modified-Since) answers 304. A single byte range, or several that
+ * coalesce into one, is a 206 sent with sendFile like a full download, so the
+ * kernel copies straight from the page cache. Several disjoint ranges are a
+ * multipart/byteranges 206 read through the file in chunks. If-Range falls back
+ * to the whole file when the validator no longer matches; an unsatisfiable range
+ * is a 416, and a malformed one or more than MAX_RANGES is ignored.
+ */
+public final class FileDownload {
+    static final int MAX_RANGES = 32;
+    private static final int CHUNK = 64 * 1024;
+    // The file may change only by being replaced, so caches must revalidate but may keep it
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private FileDownload() {
+    }
+
+    /**
+     * Serves {@code path}, or 404 if it is gone. A null {@code contentType} is
+     * guessed from {@code filename}. {@code etag} is a quoted strong validator for
+     * the content; null derives one from size and modification time.
+     */
+    public static void send(RoutingContext ctx, String path, String filename, String contentType, String etag) {
+        ctx.vertx().fileSystem().props(path)
+            .onFailure(err -> ctx.response()
+                .setStatusCode(404)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", "Document not found").encode()))
+            .onSuccess(props -> send(ctx, path, filename, contentType != null ? contentType : guessContentType(filename),
+                etag, props));
+    }
+
+    /** Content type for a file name's extension; application/octet-stream when unknown. */
+    public static String guessContentType(String filename) {
+        int dot = filename.lastIndexOf('.');
+        // Only the extension: the JDK's table cuts a name at '#' as if it were a URL
+        String guessed = dot < 0 ? null : URLConnection.guessContentTypeFromName("file" + filename.substring(dot));
+        return guessed != null ? guessed : "application/octet-stream";
+    }
+
+    private static void send(RoutingContext ctx, String path, String filename, String contentType, String etag,
+                             FileProps props) {
+        HttpServerRequest request = ctx.request();
+        HttpServerResponse response = ctx.response();
+        long size = props.size();
+        // HTTP dates have whole seconds
+        long lastModified = props.lastModifiedTime() / 1000 * 1000;
+        String tag = etag != null ? etag
+            : "\"" + Long.toHexString(size) + "-" + Long.toHexString(props.lastModifiedTime()) + "\"";
+
+        response
+            .putHeader(HttpHeaders.ETAG, tag)
+            .putHeader(HttpHeaders.LAST_MODIFIED, formatDate(lastModified))
+            .putHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL)
+            .putHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (notModified(request, tag, lastModified)) {
+            response.setStatusCode(304).end();
+            return;
+        }
+
+        List<long[]> ranges = null;
+        String range = request.getHeader("Range");
+        if (range != null && ifRangeMatches(request.getHeader("If-Range"), tag, lastModified)) {
+            ranges = parseRanges(range, size);
+        }
+        if (ranges != null && ranges.isEmpty()) {
+            response
+                .setStatusCode(416)
+                .putHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", "Range not satisfiable").encode());
+            return;
+        }
+
+        response
+            .putHeader("Content-Disposition", contentDisposition(filename))
+            .putHeader("X-Content-Type-Options", "nosniff");
+        boolean head = request.method() == HttpMethod.HEAD;
+        if (ranges == null) {
+            response.putHeader("Content-Type", contentType);
+            if (head) {
+                response.putHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(size)).end();
+            } else {
+                response.sendFile(path);
+            }
+        } else if (ranges.size() == 1) {
+            long[] only = ranges.get(0);
+            long length = only[1] - only[0] + 1;
+            response
+                .setStatusCode(206)
+                .putHeader("Content-Type", contentType)
+                .putHeader(HttpHeaders.CONTENT_RANGE, contentRange(only, size));
+            if (head) {
+                response.putHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(length)).end();
+            } else {
+                response.sendFile(path, only[0], length);
+            }
+        } else {
+            sendMultipart(ctx, path, contentType, ranges, size);
+        }
+    }
+
+    private static boolean notModified(HttpServerRequest request, String tag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // Weak comparison, as for any GET
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if (trimmed.equals("*") || stripWeak(trimmed).equals(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        Long since = parseDate(request.getHeader(HttpHeaders.IF_MODIFIED_SINCE));
+        return since != null && lastModified <= since;
+    }
+
+    private static boolean ifRangeMatches(String ifRange, String tag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String trimmed = ifRange.trim();
+        if (trimmed.startsWith("\"") || trimmed.startsWith("W/")) {
+            // Strong comparison: a weak validator never matches
+            return trimmed.equals(tag);
+        }
+        Long date = parseDate(trimmed);
+        return date != null && date == lastModified;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Parses a Range header against a file of {@code size} bytes into inclusive
+     * [first, last] pairs, sorted and with overlapping or adjacent ranges merged.
+     * Null means the header is to be ignored (malformed, not bytes, too many
+     * ranges); an empty list means no range is satisfiable.
+     */
+    static List<long[]> parseRanges(String header, long size) {
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        String[] specs = value.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            String trimmed = spec.trim();
+            int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = trimmed.substring(0, dash).trim();
+            String last = trimmed.substring(dash + 1).trim();
+            long start;
+            long end;
+            try {
+                if (first.isEmpty()) {
+                    // Suffix: the final N bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix == 0 || size == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    if (start >= size) {
+                        continue;
+                    }
+                    end = Math.min(end, size - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            ranges.add(new long[] {start, end});
+        }
+
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] r : ranges) {
+            long[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && r[0] <= previous[1] + 1) {
+                previous[1] = Math.max(previous[1], r[1]);
+            } else {
+                merged.add(r);
+            }
+        }
+        return merged;
+    }
+
+    private static void sendMultipart(RoutingContext ctx, String path, String contentType, List<long[]> ranges,
+                                      long size) {
+        HttpServerResponse response = ctx.response();
+        String boundary = UUID.randomUUID().toString();
+        List<Buffer> partHeaders = new ArrayList<>();
+        long length = 0;
+        for (long[] r : ranges) {
+            Buffer header = Buffer.buffer("\r\n--" + boundary + "\r\nContent-Type: " + contentType
+                + "\r\nContent-Range: " + contentRange(r, size) + "\r\n\r\n");
+            partHeaders.add(header);
+            length += header.length() + r[1] - r[0] + 1;
+        }
+        Buffer trailer = Buffer.buffer("\r\n--" + boundary + "--\r\n");
+        length += trailer.length();
+
+        response
+            .setStatusCode(206)
+            .putHeader("Content-Type", "multipart/byteranges; boundary=" + boundary)
+            .putHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(length));
+        if (ctx.request().method() == HttpMethod.HEAD) {
+            response.end();
+            return;
+        }
+
+        ctx.vertx().fileSystem().open(path, new OpenOptions().setRead(true))
+            .onFailure(err -> ctx.fail(500, err))
+            .onSuccess(file -> {
+                Future<Void> written = Future.succeededFuture();
+                for (int i = 0; i < ranges.size(); i++) {
+                    Buffer header = partHeaders.get(i);
+                    long[] r = ranges.get(i);
+                    written = written
+                        .compose(v -> response.write(header))
+                        .compose(v -> copy(file, response, r[0], r[1]));
+                }
+                written
+                    .compose(v -> response.end(trailer))
+                    .onComplete(ar -> {
+                        file.close();
+                        if (ar.failed() && !response.closed()) {
+                            // Headers are out: all we can do is cut the response short
+                            response.reset();
+                        }
+                    });
+            });
+    }
+
+    /** Writes bytes [position, end] of the file, reading a chunk at a time and waiting out a full write queue. */
+    private static Future<Void> copy(AsyncFile file, HttpServerResponse response, long position, long end) {
+        if (position > end) {
+            return Future.succeededFuture();
+        }
+        if (response.closed()) {
+            return Future.failedFuture("client went away");
+        }
+        int length = (int) Math.min(CHUNK, end - position + 1);
+        return file.read(Buffer.buffer(length), 0, position, length).compose(chunk -> {
+            response.write(chunk);
+            if (!response.writeQueueFull()) {
+                return copy(file, response, position + length, end);
+            }
+            Promise<Void> drained = Promise.promise();
+            response.drainHandler(drained::tryComplete);
+            response.closeHandler(drained::tryComplete);
+            return drained.future().compose(v -> copy(file, response, position + length, end));
+        });
+    }
+
+    private static String contentRange(long[] range, long size) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + size;
+    }
+
+    private static String contentDisposition(String filename) {
+        // Quoted ASCII fallback plus the exact name per RFC 6266
+        String fallback = filename.replaceAll("[^\\x20-\\x7e]|[\"\\\\]", "_");
+        String encoded = URLEncoder.encode(filename, StandardCharsets.UTF_8).replace("+", "%20");
+        return "attachment; filename=\"" + fallback + "\"; filename*=UTF-8''" + encoded;
+    }
+
+    private static String formatDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+            ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
+    }
+
+    private static Long parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Caps DEBUG and TRACE output at maxPerSecond events per logger; INFO and above always pass.
+ *
+ * Runs before the message is formatted, so a suppressed call costs one map
+ * lookup and a CAS. Turning a category to DEBUG in production therefore gives
+ * a steady sample of request-path detail instead of a line per request.
+ * Configured from logback.xml.
+ */
+public class LogRateLimiter extends TurboFilter {
+    private final Map<String, AtomicLong> windows = new ConcurrentHashMap<>();
+    private int maxPerSecond = 20;
+
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level == null || level.isGreaterOrEqual(Level.INFO) || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        AtomicLong window = windows.get(logger.getName());
+        if (window == null) {
+            window = windows.computeIfAbsent(logger.getName(), name -> new AtomicLong());
+        }
+        // High bits: the current second; low 20 bits: events logged in it
+        long second = System.currentTimeMillis() / 1000;
+        while (true) {
+            long state = window.get();
+            long count = state >>> 44 == (second & 0xFFFFF) ? state & 0xFFFFF : 0;
+            if (count >= maxPerSecond) {
+                return FilterReply.DENY;
+            }
+            if (window.compareAndSet(state, (second & 0xFFFFF) << 44 | (count + 1))) {
+                return FilterReply.NEUTRAL;
+            }
+        }
+    }
+}
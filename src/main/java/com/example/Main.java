@@ -1,9 +1,39 @@
 package com.example;
 
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.metrics.MetricsOptions;
+import io.vertx.pgclient.PgPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
 
 public class Main {
+    private static final Logger log = LoggerFactory.getLogger(Main.class);
+
     public static void main(String[] args) {
-        Vertx.vertx().deployVerticle(new MainVerticle()); 
+        // Metrics go through the Vert.x SPI, so they must be wired in before Vertx is created
+        Metrics metrics = new Metrics();
+        boolean metricsEnabled = !"false".equalsIgnoreCase(DatabasePool.env("METRICS_ENABLED", "true"));
+        Vertx vertx = Vertx.vertx(new VertxOptions()
+            .setMetricsOptions(new MetricsOptions().setEnabled(metricsEnabled).setFactory(new AppMetrics(metrics))));
+
+        // One MainVerticle per event loop; HTTP_INSTANCES=1 restores the single-loop deployment
+        int instances = DatabasePool.envInt("HTTP_INSTANCES", Runtime.getRuntime().availableProcessors());
+        PgPool dbClient = DatabasePool.create(vertx, instances, metrics);
+        SharedServices services = new SharedServices(vertx, dbClient, metrics);
+
+        // Schema first: the aggregates and every controller query assume the migrated tables
+        new SchemaManager(dbClient).migrate()
+            .compose(v -> services.start(vertx))
+            .compose(v -> vertx.deployVerticle(() -> new MainVerticle(services), new DeploymentOptions().setInstances(instances)))
+            .onSuccess(id -> log.info("deployed", kv("instances", instances)))
+            .onFailure(err -> {
+                log.error("startup failed", err);
+                vertx.close();
+            });
     }
-}
\ No newline at end of file
+}
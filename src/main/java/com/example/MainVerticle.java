@@ -11,38 +11,34 @@ import io.vertx.core.http.HttpMethod;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
-import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
-import io.vertx.sqlclient.PoolOptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
 
 public class MainVerticle extends AbstractVerticle {
+    private static final Logger log = LoggerFactory.getLogger(MainVerticle.class);
+
     boolean isProduction = false;
+
+    // 1. PostgreSQL pool and in-memory aggregates are built once in Main and shared by every instance
+    private final SharedServices services;
+    private final PgPool dbClient;
+
+    public MainVerticle(SharedServices services) {
+        this.services = services;
+        this.dbClient = services.dbClient;
+    }
     
     @Override
     public void start(Promise<Void> startPromise) {
-        // 1. Configure PostgreSQL
-        // 🌍 Load database connection details from environment variables (for Render or other deployments)
-String dbHost = System.getenv("DB_HOST") != null ? System.getenv("DB_HOST") : "localhost";
-int dbPort = System.getenv("DB_PORT") != null ? Integer.parseInt(System.getenv("DB_PORT")) : 5432;
-String dbName = System.getenv("DB_NAME") != null ? System.getenv("DB_NAME") : "project_management";
-String dbUser = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "postgres";
-String dbPassword = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "yourpassword";
-
-PgConnectOptions connectOptions = new PgConnectOptions()
-    .setPort(dbPort)
-    .setHost(dbHost)
-    .setDatabase(dbName)
-    .setUser(dbUser)
-    .setPassword(dbPassword)
-    .setConnectTimeout(5000);
-
-
-        PoolOptions poolOptions = new PoolOptions().setMaxSize(5);
-        PgPool dbClient = PgPool.pool(vertx, connectOptions, poolOptions);
-        TaskController taskController = new TaskController(dbClient, vertx);
+        TaskController taskController = new TaskController(dbClient, vertx, services.taskStatusCounts, services.userCache,
+            services.projectRisk, services.changeEvents);
         
-        // First ensure upload directory exists
-        vertx.fileSystem().mkdirs("uploads", dirRes -> {
+        // First ensure upload directories exist (uploads/tmp is BlobStore's staging area)
+        vertx.fileSystem().mkdirs(BlobStore.TMP_DIR, dirRes -> {
             if (dirRes.failed()) {
                 startPromise.fail(dirRes.cause());
                 return;
@@ -51,7 +47,7 @@ PgConnectOptions connectOptions = new PgConnectOptions()
             // 2. Test database connection
             dbClient.query("SELECT 1").execute()
                 .onSuccess(res -> {
-                    System.out.println("✅ PostgreSQL connection verified");
+                    log.info("PostgreSQL connection verified");
                     
                     // 3. Create router and handlers
                     Router router = Router.router(vertx);
@@ -64,6 +60,7 @@ PgConnectOptions connectOptions = new PgConnectOptions()
                     allowedHeaders.add("Content-Type");
                     allowedHeaders.add("accept");
                     allowedHeaders.add("Authorization");
+                    allowedHeaders.add(ResumableUploads.OFFSET_HEADER);
 
                     Set<HttpMethod> allowedMethods = new HashSet<>();
                     allowedMethods.add(HttpMethod.GET);
@@ -81,10 +78,17 @@ PgConnectOptions connectOptions = new PgConnectOptions()
                         .addOrigins(allowedOrigins)
                         .allowedHeaders(allowedHeaders)
                         .allowedMethods(allowedMethods)
+                        .exposedHeaders(Set.of(ResumableUploads.OFFSET_HEADER, "Location"))
                         .allowCredentials(true));
                     
-                    // 5. Configure BodyHandler once with upload directory
-                    router.route().handler(BodyHandler.create().setUploadsDirectory("uploads"));
+                    // 5. Bodies are read per route: JSON routes buffer at most JSON_BODY_LIMIT_BYTES
+                    // (413 beyond that, checked against Content-Length before reading) and uploads stream to disk
+                    BodyHandler jsonBody = BodyHandler.create(false)
+                        .setBodyLimit(DatabasePool.envInt("JSON_BODY_LIMIT_BYTES", 64 * 1024));
+                    
+                    // Verify Bearer session tokens once, up front; handlers read ctx.user()
+                    SessionTokens sessionTokens = services.sessionTokens;
+                    router.route("/api/*").handler(sessionTokens::authenticate);
                     
                     // OPTIONS handler
                     router.options("/login").handler(ctx -> {
@@ -96,64 +100,109 @@ PgConnectOptions connectOptions = new PgConnectOptions()
                     });
                     
                     // Auth routes
-                    AuthHandler authHandler = new AuthHandler(vertx, dbClient);
-                    router.post("/login").handler(authHandler);
+                    AuthHandler authHandler = new AuthHandler(vertx, dbClient, services.userCache, services.sessionTokens,
+                        services.passwordHasher);
+                    router.post("/login").handler(jsonBody).handler(authHandler);
                     
                     // User management routes
-                    UserController userController = new UserController(dbClient);
+                    UserController userController = new UserController(dbClient, services.userCache, services.passwordHasher,
+                        services.changeNotifier);
+                    router.get("/api/users/export").handler(userController::exportUsers);
                     router.get("/api/users").handler(userController::getAllUsers);
-                    router.post("/api/users").handler(userController::createUser);
-                    router.put("/api/users/:user_id").handler(userController::updateUser);
+                    router.post("/api/users").handler(jsonBody).handler(userController::createUser);
+                    router.put("/api/users/:user_id").handler(jsonBody).handler(userController::updateUser);
                     router.delete("/api/users/:user_id").handler(userController::deleteUser);
                     
+                    // Change stream: one ChangeStream per event loop, fed by the controllers via ChangeEvents
+                    ChangeStream changeStream = new ChangeStream(vertx);
+                    changeStream.start();
+                    router.get("/api/events").handler(sessionTokens::requireUser).handler(changeStream::subscribe);
+                    
+                    router.get("/api/user-cache/stats").handler(ctx -> ctx.response()
+                        .putHeader("Content-Type", "application/json")
+                        .end(services.userCache.stats().encode()));
+                    
                     // Health check
                     router.get("/").handler(ctx -> ctx.response().end("Server is running"));
                     
+                    // Prometheus scrape endpoint
+                    router.get("/metrics").handler(ctx -> ctx.response()
+                        .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+                        .end(services.metrics.render()));
+                    
                     // Project routes
-                    ProjectController projectController = new ProjectController(dbClient);
+                    ProjectController projectController = new ProjectController(dbClient,
+                        services.projectStatusCounts, services.taskStatusCounts, services.projectRisk,
+                        services.changeEvents);
+                    router.get("/api/projects/export").handler(projectController::exportProjects);
+                    router.get("/api/projects/portfolio").handler(projectController::getProjectsByPm);
                     router.get("/api/projects").handler(projectController::getAllProjects);
-                    router.post("/api/projects").handler(projectController::createProject);
-                    router.put("/api/projects/:project_id").handler(projectController::updateProject);
+                    router.post("/api/projects").handler(jsonBody).handler(projectController::createProject);
+                    router.put("/api/projects/:project_id").handler(jsonBody).handler(projectController::updateProject);
                     router.delete("/api/projects/:project_id").handler(projectController::deleteProject);
                     router.get("/api/project-status").handler(projectController::handleProjectStatus);
-
-                    // Task routes
+                    router.get("/api/projects/:project_id/detail").handler(projectController::getProjectDetail);
+
+                    // Task routes; /batch before the :task_id routes so "batch" is never taken for an id
+                    TaskBatchController taskBatchController = new TaskBatchController(dbClient, services.taskStatusCounts,
+                        services.projectRisk, services.changeEvents);
+                    BodyHandler batchBody = BodyHandler.create(false)
+                        .setBodyLimit(DatabasePool.envInt("TASK_BATCH_BODY_LIMIT_BYTES", 4 * 1024 * 1024));
+                    router.post("/api/tasks/batch").handler(batchBody).handler(taskBatchController::createTasks);
+                    router.patch("/api/tasks/batch").handler(batchBody).handler(taskBatchController::updateTasks);
+                    router.get("/api/tasks/export").handler(taskController::exportTasks);
                     router.get("/api/tasks").handler(taskController::getAllTasks);
-                    router.post("/api/tasks").handler(taskController::createTask);
-                    router.put("/api/tasks/:task_id").handler(taskController::updateTask);
+                    router.post("/api/tasks").handler(jsonBody).handler(taskController::createTask);
+                    router.put("/api/tasks/:task_id").handler(jsonBody).handler(taskController::updateTask);
+                    router.patch("/api/tasks/:task_id").handler(jsonBody).handler(taskController::patchTask);
                     router.delete("/api/tasks/:task_id").handler(taskController::deleteTask);
                     router.get("/api/tasks/:project_id").handler(taskController::getTasksByProject);
+                    router.get("/api/projects/:project_id/board").handler(taskController::getProjectBoard);
                     router.get("/api/task-status").handler(taskController::handleTaskStatus);
                     router.get("/api/user-tasks").handler(taskController::getUserTasks);
                     
-                    // Single consistent upload endpoint
-                    router.post("/api/tasks/:task_id/document")
-                        .handler(taskController::uploadTaskDocument);
-                        // Add this with your other routes
-                    // router.get("/api/tasks/:task_id/document").handler(taskController::getTaskDocument);
-// In your Vert.x router configuration
-
-router.get("/api/tasks/:taskId/document")
-    .handler(taskController::downloadTaskDocument);
-router.get("/api/tasks/:task_id/documents")
-    .handler(taskController::getTaskDocuments);
-
-    // Add to your router configuration
-router.get("/api/tasks/:taskId/document/download")
-    .handler(taskController::downloadTaskDocument);
+                    // Task documents; uploads stream through BlobStore, so no BodyHandler
+                    TaskDocumentController documentController = new TaskDocumentController(dbClient, services.blobStore,
+                        services.changeEvents);
+                    router.get("/api/tasks/:task_id/documents").handler(documentController::listDocuments);
+                    router.post("/api/tasks/:task_id/documents").handler(documentController::addDocument);
+                    router.get("/api/tasks/:task_id/documents/:document_id").handler(documentController::downloadDocument);
+                    router.head("/api/tasks/:task_id/documents/:document_id").handler(documentController::downloadDocument);
+                    router.delete("/api/tasks/:task_id/documents/:document_id").handler(documentController::removeDocument);
+                    router.get("/api/documents").handler(documentController::listAllDocuments);
+                    // Resumable uploads: chunks are PUT as raw bodies, streamed by ResumableUploads itself
+                    ResumableUploads uploads = services.resumableUploads;
+                    router.post("/api/tasks/:task_id/uploads").handler(jsonBody).handler(uploads::create);
+                    router.get("/api/uploads/:upload_id").handler(uploads::status);
+                    router.head("/api/uploads/:upload_id").handler(uploads::status);
+                    router.put("/api/uploads/:upload_id").handler(uploads::append);
+                    router.post("/api/uploads/:upload_id/complete").handler(uploads::complete);
+                    router.delete("/api/uploads/:upload_id").handler(uploads::abort);
+                    // The task's current (newest) document
+                    router.post("/api/tasks/:task_id/document").handler(documentController::uploadTaskDocument);
+                    router.get("/api/tasks/:task_id/document/info").handler(documentController::getTaskDocumentInfo);
+                    router.get("/api/tasks/:taskId/document").handler(documentController::downloadTaskDocument);
+                    router.head("/api/tasks/:taskId/document").handler(documentController::downloadTaskDocument);
+                    router.get("/api/tasks/:taskId/document/download").handler(documentController::downloadTaskDocument);
+                    router.head("/api/tasks/:taskId/document/download").handler(documentController::downloadTaskDocument);
                     // Team routes
-                    TeamController teamController = new TeamController(dbClient);
+                    TeamController teamController = new TeamController(dbClient, services.userCache, services.changeEvents);
+                    router.get("/api/teams/export").handler(teamController::exportTeams);
                     router.get("/api/teams").handler(teamController::getAllTeams);
-                    router.post("/api/teams").handler(teamController::createTeam);
-                    router.put("/api/teams/:team_id").handler(teamController::updateTeam);
+                    router.post("/api/teams").handler(jsonBody).handler(teamController::createTeam);
+                    router.put("/api/teams/:team_id").handler(jsonBody).handler(teamController::updateTeam);
                     router.delete("/api/teams/:team_id").handler(teamController::deleteTeam);
                     router.get("/api/projects/:project_id/teams").handler(teamController::getTeamsByProject);
                     router.get("/api/teams/:team_id/members").handler(teamController::getTeamMembers);
-                    router.post("/api/teams/:team_id/members").handler(teamController::addTeamMember);
-                    router.put("/api/teams/:team_id/members/:user_id").handler(teamController::updateTeamMemberRole);
+                    router.post("/api/teams/:team_id/members").handler(jsonBody).handler(teamController::addTeamMembers);
+                    router.put("/api/teams/:team_id/members").handler(jsonBody).handler(teamController::updateTeamMemberRoles);
+                    router.delete("/api/teams/:team_id/members").handler(jsonBody).handler(teamController::removeTeamMembers);
+                    router.put("/api/teams/:team_id/members/:user_id").handler(jsonBody).handler(teamController::updateTeamMemberRole);
                     router.delete("/api/teams/:team_id/members/:user_id").handler(teamController::removeTeamMember);
-                    router.get("/api/my_teams/:user_id").handler(teamController::getTeamDashboard);
-                    router.get("/api/team-dashboard").handler(teamController::getTeamDashboard);
+                    router.get("/api/my_teams/:user_id").handler(sessionTokens::requireUser)
+                        .handler(teamController::getTeamDashboard);
+                    router.get("/api/team-dashboard").handler(sessionTokens::requireUser)
+                        .handler(teamController::getTeamDashboard);
                     router.get("/api/user-teams").handler(teamController::getUserTeams);
                     router.get("/api/team-projects").handler(teamController::getTeamProjects);
 
@@ -165,8 +214,7 @@ vertx.createHttpServer()
      .requestHandler(router)
      .listen(port, "0.0.0.0")  // <-- bind to all interfaces
      .onSuccess(server -> {
-         System.out.println("🚀 Server running on port " + port);
-         System.out.println("📁 Upload directory: uploads/");
+         log.info("Server running", kv("port", port), kv("upload_dir", "uploads/"));
          startPromise.complete();
      })
      .onFailure(startPromise::fail);
@@ -174,7 +222,7 @@ vertx.createHttpServer()
 
                 })
                 .onFailure(err -> {
-                    System.err.println("❌ Database connection failed");
+                    log.error("Database connection failed", err);
                     startPromise.fail(err);
                 });
         });
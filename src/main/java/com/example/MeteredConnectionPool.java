@@ -0,0 +1,170 @@
+package com.example;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.net.impl.pool.ConnectionPool;
+import io.vertx.core.net.impl.pool.Lease;
+import io.vertx.core.net.impl.pool.PoolConnection;
+import io.vertx.core.net.impl.pool.PoolWaiter;
+import io.vertx.pgclient.PgPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times connection acquisition and counts leases for the pg pool.
+ *
+ * vertx-sql-client 4.5 does not report its pool through the metrics SPI, so this
+ * wraps the connection pool inside the PgPool (one reflective swap at startup)
+ * and records acquire latency, leased connections and rejected acquires. If the
+ * client internals ever change shape, {@link #install} logs and leaves the pool alone.
+ */
+public class MeteredConnectionPool<C> implements ConnectionPool<C> {
+    private static final Logger log = LoggerFactory.getLogger(MeteredConnectionPool.class);
+
+    private final ConnectionPool<C> delegate;
+    private final Metrics metrics;
+    private final AtomicInteger leased = new AtomicInteger();
+
+    MeteredConnectionPool(ConnectionPool<C> delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public static void install(PgPool pool, Metrics metrics, int maxSize) {
+        try {
+            // PgPoolImpl.delegate (PoolImpl) -> .pool (SqlConnectionPool) -> .pool (ConnectionPool)
+            Object poolImpl = read(pool, "delegate");
+            Object sqlConnectionPool = read(poolImpl, "pool");
+            Field field = field(sqlConnectionPool.getClass(), "pool");
+            @SuppressWarnings("unchecked")
+            ConnectionPool<Object> connections = (ConnectionPool<Object>) field.get(sqlConnectionPool);
+            MeteredConnectionPool<Object> metered = new MeteredConnectionPool<>(connections, metrics);
+            field.set(sqlConnectionPool, metered);
+            metrics.poolGauges(metered.leased::get, connections::waiters, connections::size, maxSize);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("pool metrics unavailable", e);
+        }
+    }
+
+    private static Object read(Object target, String name) throws ReflectiveOperationException {
+        return field(target.getClass(), name).get(target);
+    }
+
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // keep walking up
+            }
+        }
+        throw new NoSuchFieldException(type.getName() + "." + name);
+    }
+
+    @Override
+    public void acquire(ContextInternal context, int kind, Handler<AsyncResult<Lease<C>>> handler) {
+        delegate.acquire(context, kind, timed(handler));
+    }
+
+    @Override
+    public void acquire(ContextInternal context, PoolWaiter.Listener<C> listener, int kind,
+                        Handler<AsyncResult<Lease<C>>> handler) {
+        delegate.acquire(context, listener, kind, timed(handler));
+    }
+
+    private Handler<AsyncResult<Lease<C>>> timed(Handler<AsyncResult<Lease<C>>> handler) {
+        long start = System.nanoTime();
+        return ar -> {
+            metrics.poolAcquire().observeNanos(System.nanoTime() - start);
+            if (ar.failed()) {
+                metrics.poolRejected();
+                handler.handle(ar);
+                return;
+            }
+            leased.incrementAndGet();
+            handler.handle(Future.succeededFuture(new MeteredLease(ar.result())));
+        };
+    }
+
+    private final class MeteredLease implements Lease<C> {
+        private final Lease<C> lease;
+        private boolean recycled;
+
+        MeteredLease(Lease<C> lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public C get() {
+            return lease.get();
+        }
+
+        @Override
+        public void recycle() {
+            if (!recycled) {
+                recycled = true;
+                leased.decrementAndGet();
+            }
+            lease.recycle();
+        }
+    }
+
+    @Override
+    public ConnectionPool<C> connectionSelector(BiFunction<PoolWaiter<C>, List<PoolConnection<C>>, PoolConnection<C>> selector) {
+        delegate.connectionSelector(selector);
+        return this;
+    }
+
+    @Override
+    public ConnectionPool<C> contextProvider(Function<ContextInternal, ContextInternal> contextProvider) {
+        delegate.contextProvider(contextProvider);
+        return this;
+    }
+
+    @Override
+    public void cancel(PoolWaiter<C> waiter, Handler<AsyncResult<Boolean>> handler) {
+        delegate.cancel(waiter, handler);
+    }
+
+    @Override
+    public void evict(Predicate<C> predicate, Handler<AsyncResult<List<C>>> handler) {
+        delegate.evict(predicate, handler);
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<List<Future<C>>>> handler) {
+        delegate.close(handler);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int waiters() {
+        return delegate.waiters();
+    }
+
+    @Override
+    public int capacity() {
+        return delegate.capacity();
+    }
+
+    @Override
+    public int requests() {
+        return delegate.requests();
+    }
+}
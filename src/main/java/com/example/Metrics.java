@@ -0,0 +1,225 @@
+package com.example;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Process-wide Prometheus metrics, rendered by GET /metrics in text format 0.0.4.
+ *
+ * Recording is lock-free and allocation-free once a series exists: every series
+ * is a set of LongAdders found with a plain map get, histograms have fixed
+ * buckets, and label strings are escaped once when the series is created.
+ * Fed by {@link AppMetrics} (HTTP routes and SQL statements, through the Vert.x
+ * metrics SPI) and {@link MeteredConnectionPool} (connection pool).
+ */
+public class Metrics {
+    // Seconds; shared by every latency histogram
+    private static final double[] BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+    // Dynamic SQL (IN lists, per-field UPDATEs...) must not grow the series set without bound
+    private static final int MAX_STATEMENTS = 500;
+    private static final String OTHER_STATEMENT = "other";
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKETS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /** Fixed-bucket latency histogram. */
+    public static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observeNanos(long nanos) {
+            for (int i = 0; i < BUCKET_NANOS.length; i++) {
+                if (nanos <= BUCKET_NANOS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sumNanos.add(nanos);
+        }
+
+        void render(StringBuilder out, String name, String labels) {
+            String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(name).append("_bucket").append(prefix).append("le=\"").append(BUCKETS[i]).append("\"} ")
+                    .append(cumulative).append('\n');
+            }
+            long total = count.sum();
+            out.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(total).append('\n');
+            String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+            out.append(name).append("_sum").append(suffix).append(sumNanos.sum() / 1e9).append('\n');
+            out.append(name).append("_count").append(suffix).append(total).append('\n');
+        }
+    }
+
+    /** One (route, method) pair: latency plus a counter per status code (0 = reset before a response). */
+    public static final class RouteStats {
+        final String labels;
+        final Histogram latency = new Histogram();
+        final Map<Integer, LongAdder> statuses = new ConcurrentSkipListMap<>();
+
+        RouteStats(String route, String method) {
+            this.labels = "method=\"" + escape(method) + "\",route=\"" + escape(route) + "\"";
+        }
+
+        public void record(int status, long nanos) {
+            latency.observeNanos(nanos);
+            LongAdder counter = statuses.get(status);
+            if (counter == null) {
+                counter = statuses.computeIfAbsent(status, s -> new LongAdder());
+            }
+            counter.increment();
+        }
+    }
+
+    /** One distinct SQL text. */
+    public static final class StatementStats {
+        final String labels;
+        final Histogram latency = new Histogram();
+        final LongAdder failures = new LongAdder();
+
+        StatementStats(String sql) {
+            this.labels = "statement=\"" + escape(sql) + "\"";
+        }
+
+        public void record(long nanos, boolean succeeded) {
+            latency.observeNanos(nanos);
+            if (!succeeded) {
+                failures.increment();
+            }
+        }
+    }
+
+    private final Map<String, Map<String, RouteStats>> routes = new ConcurrentHashMap<>();
+    // Keyed by the whitespace-normalized text, which is also the label, so one label is one series
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    // Raw SQL text -> its series, so the hot path skips normalizing
+    private final Map<String, StatementStats> bySql = new ConcurrentHashMap<>();
+    private final Histogram poolAcquire = new Histogram();
+    private final LongAdder poolRejected = new LongAdder();
+    private volatile IntSupplier poolInUse = () -> 0;
+    private volatile IntSupplier poolWaiting = () -> 0;
+    private volatile IntSupplier poolSize = () -> 0;
+    private volatile int poolMaxSize;
+
+    public RouteStats route(String route, String method) {
+        Map<String, RouteStats> byMethod = routes.get(route);
+        if (byMethod == null) {
+            byMethod = routes.computeIfAbsent(route, r -> new ConcurrentSkipListMap<>());
+        }
+        RouteStats stats = byMethod.get(method);
+        if (stats == null) {
+            stats = byMethod.computeIfAbsent(method, m -> new RouteStats(route, m));
+        }
+        return stats;
+    }
+
+    public StatementStats statement(String sql) {
+        StatementStats stats = bySql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        String normalized = normalize(sql);
+        stats = statements.get(normalized);
+        if (stats == null) {
+            stats = statements.computeIfAbsent(statements.size() >= MAX_STATEMENTS ? OTHER_STATEMENT : normalized,
+                StatementStats::new);
+        }
+        if (bySql.size() < MAX_STATEMENTS) {
+            bySql.putIfAbsent(sql, stats);
+        }
+        return stats;
+    }
+
+    /** Trims and collapses every whitespace run to one space, without a regex: dynamic SQL gets here on every execution. */
+    static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = out.length() > 0;
+            } else {
+                if (space) {
+                    out.append(' ');
+                    space = false;
+                }
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    public Histogram poolAcquire() {
+        return poolAcquire;
+    }
+
+    public void poolRejected() {
+        poolRejected.increment();
+    }
+
+    public void poolGauges(IntSupplier inUse, IntSupplier waiting, IntSupplier size, int maxSize) {
+        this.poolInUse = inUse;
+        this.poolWaiting = waiting;
+        this.poolSize = size;
+        this.poolMaxSize = maxSize;
+    }
+
+    public String render() {
+        StringBuilder out = new StringBuilder(64 * 1024);
+
+        header(out, "http_server_requests_total", "counter", "HTTP requests by route, method and status code (0 = reset)");
+        routes.values().forEach(byMethod -> byMethod.values().forEach(stats -> stats.statuses.forEach((status, count) ->
+            out.append("http_server_requests_total{").append(stats.labels).append(",code=\"").append(status)
+                .append("\"} ").append(count.sum()).append('\n'))));
+        header(out, "http_server_request_duration_seconds", "histogram", "Time from request head to response end");
+        routes.values().forEach(byMethod -> byMethod.values().forEach(stats ->
+            stats.latency.render(out, "http_server_request_duration_seconds", stats.labels)));
+
+        header(out, "pg_pool_in_use", "gauge", "Leases currently held; with pipelining several can share a connection");
+        out.append("pg_pool_in_use ").append(poolInUse.getAsInt()).append('\n');
+        header(out, "pg_pool_connections", "gauge", "Open connections");
+        out.append("pg_pool_connections ").append(poolSize.getAsInt()).append('\n');
+        header(out, "pg_pool_connections_max", "gauge", "Configured maximum pool size");
+        out.append("pg_pool_connections_max ").append(poolMaxSize).append('\n');
+        header(out, "pg_pool_wait_queue", "gauge", "Requests waiting for a connection");
+        out.append("pg_pool_wait_queue ").append(poolWaiting.getAsInt()).append('\n');
+        header(out, "pg_pool_acquire_rejected_total", "counter", "Acquires that failed (wait queue full, connect error)");
+        out.append("pg_pool_acquire_rejected_total ").append(poolRejected.sum()).append('\n');
+        header(out, "pg_pool_acquire_duration_seconds", "histogram", "Time spent waiting for a pooled connection");
+        poolAcquire.render(out, "pg_pool_acquire_duration_seconds", "");
+
+        header(out, "sql_query_duration_seconds", "histogram", "Execution time per SQL statement, on the connection");
+        statements.values().forEach(stats -> stats.latency.render(out, "sql_query_duration_seconds", stats.labels));
+        header(out, "sql_query_failures_total", "counter", "Failed executions per SQL statement");
+        statements.values().forEach(stats -> out.append("sql_query_failures_total{").append(stats.labels).append("} ")
+            .append(stats.failures.sum()).append('\n'));
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
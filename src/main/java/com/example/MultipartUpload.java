@@ -0,0 +1,195 @@
+package com.example;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerFileUpload;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Streams the first file of a multipart/form-data request straight to disk.
+ *
+ * Used instead of BodyHandler on upload routes: nothing is buffered in memory,
+ * writes are flow-controlled against the file, and the whole request body is
+ * capped at UPLOAD_MAX_BYTES. A declared Content-Length over the cap is refused
+ * before a single byte is read; a chunked body that grows past it is cut off and
+ * the partial file deleted. Further file parts are read and discarded.
+ *
+ * The SHA-256 of the file is computed as it streams. With a null directory the
+ * file is only hashed, never written, for callers that already hold the content.
+ */
+public final class MultipartUpload {
+    public static final long MAX_BYTES = DatabasePool.envInt("UPLOAD_MAX_BYTES", 25 * 1024 * 1024);
+
+    /** A file stored under a generated name (path null when only hashed), plus what the client called it. */
+    public static final class Received {
+        public final String path;
+        public final String storedName;
+        public final String originalName;
+        public final String contentType;
+        public final long size;
+        public final String sha256;
+
+        Received(String path, String storedName, String originalName, String contentType, long size, String sha256) {
+            this.path = path;
+            this.storedName = storedName;
+            this.originalName = originalName;
+            this.contentType = contentType;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+    }
+
+    /** Request body larger than the upload limit. */
+    public static class TooLarge extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TooLarge(long maxBytes) {
+            super("Upload exceeds the " + maxBytes + " byte limit", null, false, false);
+        }
+    }
+
+    private MultipartUpload() {
+    }
+
+    public static Future<Received> receive(RoutingContext ctx, String directory, long maxBytes) {
+        HttpServerRequest request = ctx.request();
+        String contentLength = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+        try {
+            if (contentLength != null && Long.parseLong(contentLength) > maxBytes) {
+                return Future.failedFuture(new TooLarge(maxBytes));
+            }
+        } catch (NumberFormatException e) {
+            return Future.failedFuture(new IllegalArgumentException("Invalid Content-Length"));
+        }
+        String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+        if (contentType == null || !contentType.toLowerCase().startsWith("multipart/form-data")) {
+            return Future.failedFuture(new IllegalArgumentException("Expected a multipart/form-data upload"));
+        }
+
+        Promise<Received> result = Promise.promise();
+        FileSystem fs = ctx.vertx().fileSystem();
+        long[] bodyBytes = {0};
+        AtomicReference<Future<Received>> first = new AtomicReference<>();
+
+        request.setExpectMultipart(true);
+        // Counts the raw body, so the cap also holds for chunked requests with no Content-Length
+        request.handler(chunk -> {
+            bodyBytes[0] += chunk.length();
+            if (bodyBytes[0] > maxBytes) {
+                result.tryFail(new TooLarge(maxBytes));
+            }
+        });
+        request.uploadHandler(upload -> {
+            if (first.get() != null || result.future().isComplete()) {
+                upload.handler(ignored -> { });
+                return;
+            }
+            first.set(store(fs, upload, directory, result.future()));
+            first.get().onFailure(result::tryFail);
+        });
+        request.exceptionHandler(result::tryFail);
+        result.future().onFailure(err -> {
+            if (first.get() != null) {
+                first.get().onSuccess(stored -> {
+                    if (stored.path != null) {
+                        fs.delete(stored.path);
+                    }
+                });
+            }
+        });
+        request.endHandler(v -> {
+            if (first.get() == null) {
+                result.tryFail(new IllegalArgumentException("No file uploaded"));
+            } else {
+                first.get().onSuccess(result::tryComplete);
+            }
+        });
+        return result.future();
+    }
+
+    private static Future<Received> store(FileSystem fs, HttpServerFileUpload upload, String directory,
+                                          Future<Received> request) {
+        upload.pause();
+        String originalName = upload.filename();
+        int dot = originalName.lastIndexOf('.');
+        String storedName = directory == null ? null : UUID.randomUUID() + (dot >= 0 ? originalName.substring(dot) : "");
+        String path = directory == null ? null : directory + "/" + storedName;
+
+        Future<AsyncFile> opened = path == null
+            ? Future.succeededFuture()
+            : fs.open(path, new OpenOptions().setWrite(true).setCreateNew(true));
+        return opened.compose(file -> {
+            Promise<Received> done = Promise.promise();
+            MessageDigest digest = sha256();
+            long[] size = {0};
+            // Stop writing as soon as the request as a whole is rejected (too large, reset...)
+            request.onFailure(done::tryFail);
+            upload.handler(chunk -> {
+                if (done.future().isComplete()) {
+                    return;
+                }
+                size[0] += chunk.length();
+                digest.update(chunk.getBytes());
+                if (file == null) {
+                    return;
+                }
+                file.write(chunk);
+                if (file.writeQueueFull()) {
+                    upload.pause();
+                    file.drainHandler(v -> upload.resume());
+                }
+            });
+            upload.exceptionHandler(done::tryFail);
+            upload.endHandler(v -> (file == null ? Future.<Void>succeededFuture() : file.close())
+                .onSuccess(closed -> done.tryComplete(new Received(path, storedName, originalName,
+                    upload.contentType(), size[0], HexFormat.of().formatHex(digest.digest()))))
+                .onFailure(done::tryFail));
+            upload.resume();
+            return done.future().onFailure(err -> {
+                if (file != null) {
+                    file.close().onComplete(closed -> fs.delete(path));
+                }
+            });
+        });
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every JVM", e);
+        }
+    }
+
+    /** Maps a receive() failure to 413 / 400 / 500. */
+    public static void sendError(RoutingContext ctx, Throwable err) {
+        if (err instanceof TooLarge) {
+            // Do not read the rest of an oversized body: answer and drop the connection
+            ctx.response()
+                .setStatusCode(413)
+                .putHeader("Content-Type", "application/json")
+                .putHeader("Connection", "close")
+                .end(new JsonObject().put("error", err.getMessage()).encode())
+                .onComplete(v -> ctx.request().connection().close());
+        } else if (err instanceof IllegalArgumentException) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", err.getMessage()).encode());
+        } else {
+            ctx.fail(500, err);
+        }
+    }
+}
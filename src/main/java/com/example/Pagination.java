@@ -0,0 +1,121 @@
+package com.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+
+/**
+ * Keyset pagination over an integer primary key.
+ *
+ * Requests pass ?limit=N&after=CURSOR, where CURSOR is the next_cursor of the
+ * previous page. Queries select "WHERE id > $after ORDER BY id LIMIT $fetch",
+ * fetching one extra row to know whether another page exists, so every page
+ * costs an index range scan no matter how deep the client has paged.
+ */
+public class Pagination {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private static final byte[] DATA_PREFIX = "{\"data\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CURSOR_PREFIX = ",\"next_cursor\":".getBytes(StandardCharsets.US_ASCII);
+
+    private final int limit;
+    private final int after;
+
+    private Pagination(int limit, int after) {
+        this.limit = limit;
+        this.after = after;
+    }
+
+    /**
+     * Parses limit/after from the query string.
+     *
+     * @throws IllegalArgumentException if either parameter is malformed
+     */
+    public static Pagination fromRequest(RoutingContext ctx) {
+        String limitParam = ctx.request().getParam("limit");
+        String afterParam = ctx.request().getParam("after");
+
+        int limit = DEFAULT_LIMIT;
+        if (limitParam != null && !limitParam.isEmpty()) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be a number");
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+        }
+
+        int after = Integer.MIN_VALUE;
+        if (afterParam != null && !afterParam.isEmpty()) {
+            try {
+                after = Integer.parseInt(afterParam);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid after cursor");
+            }
+        }
+
+        return new Pagination(limit, after);
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /** Lower bound (exclusive) for the key column. */
+    public int after() {
+        return after;
+    }
+
+    /** Row count to request from the database: one past the page size. */
+    public int fetchSize() {
+        return limit + 1;
+    }
+
+    /**
+     * Encodes {"data": [...], "next_cursor": "..."} from rows fetched with {@link #fetchSize()}.
+     * The returned pooled buffer must be sent with {@link RowJsonWriter#send}.
+     */
+    public ByteBuf toPage(RowSet<Row> rows, String keyColumn, RowJsonWriter writer) {
+        return toPage(rows, limit, writer, row -> String.valueOf(row.getInteger(keyColumn)));
+    }
+
+    /**
+     * Same envelope for any cursor format: {@code cursorOf} encodes the last row of a
+     * full page, and next_cursor is null when no row beyond {@code limit} was fetched.
+     */
+    public static ByteBuf toPage(RowSet<Row> rows, int limit, RowJsonWriter writer, Function<Row, String> cursorOf) {
+        ByteBuf out = RowJsonWriter.allocate(64 + Math.min(rows.size(), limit) * 160);
+        out.writeBytes(DATA_PREFIX);
+        writer.writeArray(rows, limit, out);
+        out.writeBytes(CURSOR_PREFIX);
+
+        String cursor = null;
+        if (rows.size() > limit) {
+            int index = 0;
+            for (Row row : rows) {
+                if (++index == limit) {
+                    cursor = cursorOf.apply(row);
+                    break;
+                }
+            }
+        }
+        RowJsonWriter.writeValue(cursor, out);
+        out.writeByte('}');
+        return out;
+    }
+
+    public static void sendBadRequest(RoutingContext ctx, IllegalArgumentException e) {
+        ctx.response()
+            .setStatusCode(400)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("error", e.getMessage()).encode());
+    }
+}
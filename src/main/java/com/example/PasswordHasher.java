@@ -0,0 +1,98 @@
+package com.example;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * bcrypt hashing and verification on a dedicated, bounded worker pool.
+ *
+ * A cost-12 hash is roughly a quarter second of CPU, so it must never run on an
+ * event loop, and it should not compete with the default worker pool either.
+ * Work beyond BCRYPT_POOL_SIZE running + BCRYPT_MAX_QUEUE waiting is rejected
+ * with {@link Overloaded} instead of queueing without limit; callers answer 503.
+ *
+ * Passwords stored before bcrypt was introduced are plaintext; they are still
+ * accepted (compared in constant time) and reported as needing a rehash.
+ */
+public class PasswordHasher {
+    private static final Logger log = LoggerFactory.getLogger(PasswordHasher.class);
+
+    /** The pool and its queue are full. */
+    public static class Overloaded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Overloaded() {
+            super("Password hashing queue is full", null, false, false);
+        }
+    }
+
+    public enum Result {
+        MATCH, MATCH_NEEDS_REHASH, MISMATCH
+    }
+
+    private final WorkerExecutor executor;
+    private final int cost;
+    private final int capacity;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public PasswordHasher(Vertx vertx) {
+        int poolSize = DatabasePool.envInt("BCRYPT_POOL_SIZE", Math.max(1, Runtime.getRuntime().availableProcessors()));
+        int maxQueue = DatabasePool.envInt("BCRYPT_MAX_QUEUE", poolSize * 8);
+        this.cost = DatabasePool.envInt("BCRYPT_COST", 12);
+        this.capacity = poolSize + maxQueue;
+        this.executor = vertx.createSharedWorkerExecutor("bcrypt-pool", poolSize);
+        log.info("bcrypt pool configured", kv("size", poolSize), kv("max_queue", maxQueue), kv("cost", cost));
+    }
+
+    public Future<String> hash(String password) {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+    }
+
+    public Future<Result> verify(String password, String stored) {
+        if (!isBcrypt(stored)) {
+            boolean match = MessageDigest.isEqual(
+                password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+            return Future.succeededFuture(match ? Result.MATCH_NEEDS_REHASH : Result.MISMATCH);
+        }
+        return submit(() -> {
+            if (!BCrypt.checkpw(password, stored)) {
+                return Result.MISMATCH;
+            }
+            return costOf(stored) < cost ? Result.MATCH_NEEDS_REHASH : Result.MATCH;
+        });
+    }
+
+    public int queueDepth() {
+        return inFlight.get();
+    }
+
+    private <T> Future<T> submit(java.util.concurrent.Callable<T> work) {
+        if (inFlight.incrementAndGet() > capacity) {
+            inFlight.decrementAndGet();
+            return Future.failedFuture(new Overloaded());
+        }
+        // Unordered: independent logins run in parallel across the pool
+        return executor.executeBlocking(work, false)
+            .onComplete(ar -> inFlight.decrementAndGet());
+    }
+
+    static boolean isBcrypt(String stored) {
+        return stored.length() == 60 && stored.startsWith("$2") && stored.charAt(3) == '$';
+    }
+
+    private static int costOf(String bcryptHash) {
+        return Integer.parseInt(bcryptHash.substring(4, 6));
+    }
+}
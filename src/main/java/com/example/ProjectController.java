@@ -2,36 +2,65 @@ package com.example;
 
 import java.time.LocalDate;
 
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.Tuple;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
 public class ProjectController {
+    private static final Logger log = LoggerFactory.getLogger(ProjectController.class);
+
+    // Must match the SELECT list of getAllProjects/exportProjects
+    private static final RowJsonWriter PROJECT_JSON = RowJsonWriter.forColumns(
+        "project_id", "name", "description", "status", "deadline", "project_manager_id", "created_at");
+
     private final PgPool dbClient;
+    private final StatusCounts statusCounts;
+    private final StatusCounts taskStatusCounts;
+    private final ProjectRisk projectRisk;
+    private final ChangeEvents changeEvents;
 
-    public ProjectController(PgPool dbClient) {
+    public ProjectController(PgPool dbClient, StatusCounts statusCounts, StatusCounts taskStatusCounts,
+                             ProjectRisk projectRisk, ChangeEvents changeEvents) {
         this.dbClient = dbClient;
+        this.statusCounts = statusCounts;
+        this.taskStatusCounts = taskStatusCounts;
+        this.projectRisk = projectRisk;
+        this.changeEvents = changeEvents;
     }
 
     public void getAllProjects(RoutingContext ctx) {
-        dbClient.query("SELECT project_id, name, description, status, deadline, project_manager_id, created_at FROM projects ORDER BY project_id")
-            .execute()
-            .onSuccess(rows -> {
-                JsonArray projects = new JsonArray();
-                rows.forEach(row -> projects.add(row.toJson()));
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(projects.encode());
-            })
+        Pagination page;
+        try {
+            page = Pagination.fromRequest(ctx);
+        } catch (IllegalArgumentException e) {
+            Pagination.sendBadRequest(ctx, e);
+            return;
+        }
+
+        dbClient.preparedQuery(
+            "SELECT project_id, name, description, status, deadline, project_manager_id, created_at FROM projects " +
+            "WHERE project_id > $1 ORDER BY project_id LIMIT $2")
+            .execute(Tuple.of(page.after(), page.fetchSize()))
+            .onSuccess(rows -> RowJsonWriter.send(ctx.response(), page.toPage(rows, "project_id", PROJECT_JSON)))
             .onFailure(err -> {
-                System.err.println("Database error: " + err.getMessage());
+                log.error("list projects failed", err);
                 ctx.fail(500, err);
             });
     }
 
+    public void exportProjects(RoutingContext ctx) {
+        RowStreamer.stream(dbClient, ctx,
+            "SELECT project_id, name, description, status, deadline, project_manager_id, created_at FROM projects ORDER BY project_id",
+            Tuple.tuple(), PROJECT_JSON);
+    }
+
     public void createProject(RoutingContext ctx) {
         JsonObject project = ctx.getBodyAsJson();
                     // Parse deadline from String to LocalDate if present
@@ -51,13 +80,18 @@ public class ProjectController {
                 deadline,
                 project.getInteger("project_manager_id"))) // Accepts null
             .onSuccess(rows -> {
+                Row created = rows.iterator().next();
+                statusCounts.increment(created.getString("status"));
+                projectRisk.markDirty(created.getInteger("project_id"));
+                JsonObject body = created.toJson();
+                changeEvents.project("created", body, null);
                 ctx.response()
                     .setStatusCode(201)
                     .putHeader("Content-Type", "application/json")
-                    .end(rows.iterator().next().toJson().encode());
+                    .end(body.encode());
             })
             .onFailure(err -> {
-                System.err.println("Create project error: " + err.getMessage());
+                log.error("create project failed", err);
                 ctx.fail(500, err);
             });
     }
@@ -79,11 +113,13 @@ public class ProjectController {
                 null;
             
             dbClient.preparedQuery(
-                "UPDATE projects SET " +
+                "UPDATE projects p SET " +
                 "name = $1, description = $2, status = $3, " +
                 "deadline = $4, project_manager_id = $5 " +
-                "WHERE project_id = $6 " +
-                "RETURNING project_id, name, description, status, deadline, project_manager_id, created_at")
+                "FROM (SELECT project_id, status FROM projects WHERE project_id = $6 FOR UPDATE) old " +
+                "WHERE p.project_id = old.project_id " +
+                "RETURNING p.project_id, p.name, p.description, p.status, p.deadline, p.project_manager_id, p.created_at, " +
+                "old.status AS previous_status")
                 .execute(Tuple.of(
                     project.getString("name"),
                     project.getString("description", ""),
@@ -95,9 +131,15 @@ public class ProjectController {
                     if (rows.size() == 0) {
                         ctx.response().setStatusCode(404).end("Project not found");
                     } else {
+                        Row updated = rows.iterator().next();
+                        statusCounts.move(updated.getString("previous_status"), updated.getString("status"));
+                        projectRisk.markDirty(projectId);
+                        JsonObject body = updated.toJson();
+                        body.remove("previous_status");
+                        changeEvents.project("updated", body, updated.getString("previous_status"));
                         ctx.response()
                             .putHeader("Content-Type", "application/json")
-                            .end(rows.iterator().next().toJson().encode());
+                            .end(body.encode());
                     }
                 })
                 .onFailure(err -> {
@@ -109,31 +151,11 @@ public class ProjectController {
             ctx.response().setStatusCode(400).end("project_id must be a number");
         }
     }
+    // Served from the in-memory aggregate; see StatusCounts
     public void handleProjectStatus(RoutingContext ctx) {
-        dbClient.preparedQuery("SELECT status, COUNT(*) as count FROM projects GROUP BY status")
-            .execute()
-            .onSuccess(rows -> {
-                JsonObject result = new JsonObject();
-                for (Row row : rows) {
-                    String status = row.getString("status");
-                    Integer count = row.getInteger("count");
-                    if (status != null && count != null) {
-                        result.put(status, count);
-                    }
-                }
-                ctx.response()
-                   .putHeader("Content-Type", "application/json")
-                   .end(result.encode());
-            })
-            .onFailure(err -> {
-                ctx.response()
-                   .setStatusCode(500)
-                   .putHeader("Content-Type", "application/json")
-                   .end(new JsonObject()
-                       .put("error", "Failed to fetch project status")
-                       .put("details", err.getMessage())
-                       .encode());
-            });
+        ctx.response()
+           .putHeader("Content-Type", "application/json")
+           .end(statusCounts.toJson());
     }
     public void deleteProject(RoutingContext ctx) {
         String projectIdParam = ctx.pathParam("project_id");
@@ -146,12 +168,18 @@ public class ProjectController {
         try {
             int projectId = Integer.parseInt(projectIdParam);
             
-            dbClient.preparedQuery("DELETE FROM projects WHERE project_id = $1")
+            dbClient.preparedQuery("DELETE FROM projects WHERE project_id = $1 RETURNING project_id, status, project_manager_id")
                 .execute(Tuple.of(projectId))
                 .onSuccess(rows -> {
                     if (rows.rowCount() == 0) {
                         ctx.response().setStatusCode(404).end("Project not found");
                     } else {
+                        statusCounts.decrement(rows.iterator().next().getString("status"));
+                        // Deleting a project can cascade to its tasks
+                        taskStatusCounts.reconcile()
+                            .onFailure(err -> log.warn("task status reconcile failed", err));
+                        projectRisk.markDirty(projectId);
+                        changeEvents.project("deleted", rows.iterator().next().toJson(), null);
                         ctx.response().setStatusCode(204).end();
                     }
                 })
@@ -165,73 +193,98 @@ public class ProjectController {
         }
     }
 
-    public void getProjectsByPm(RoutingContext ctx) {
+    /**
+     * Everything a project page shows, in one statement: the project, its teams with
+     * their members, and a task summary (total, per status, overdue). Postgres builds
+     * the JSON document with json_agg over LATERAL subqueries and the text is sent
+     * as-is, so a page load is one pool checkout and one round trip whatever the
+     * number of teams.
+     */
+    public void getProjectDetail(RoutingContext ctx) {
+        int projectId;
         try {
-            int pmId = Integer.parseInt(ctx.request().getParam("pm"));
-            
-            String query = """
-                SELECT p.*, 
-                       COUNT(t.task_id) as total_tasks,
-                       SUM(CASE WHEN t.status = 'Done' THEN 1 ELSE 0 END) as completed_tasks,
-                       (SELECT COUNT(*) FROM project_teams WHERE project_id = p.project_id) as team_count,
-                       (p.deadline - CURRENT_DATE) as days_remaining,
-                       (CASE 
-                          WHEN p.status = 'Completed' THEN 100
-                          WHEN COUNT(t.task_id) = 0 THEN 0
-                          ELSE (SUM(CASE WHEN t.status = 'Done' THEN 1 ELSE 0 END) * 100.0 / COUNT(t.task_id))
-                        END) as completion_percentage,
-                       EXTRACT(DAY FROM (p.deadline - p.created_at)) as planned_duration,
-                       EXTRACT(DAY FROM (CURRENT_DATE - p.created_at)) as elapsed_days
-                FROM projects p
-                LEFT JOIN tasks t ON p.project_id = t.project_id
-                WHERE p.project_manager_id = ?
-                GROUP BY p.project_id
-                ORDER BY p.created_at DESC
-                """;
-            
-            dbClient.preparedQuery(query)
-                .execute(Tuple.of(pmId))
-                .onSuccess(rows -> {
-                    JsonArray projects = new JsonArray();
-                    rows.forEach(row -> {
-                        JsonObject project = row.toJson();
-                        // Calculate risk level
-                        project.put("risk_level", calculateRiskLevel(project));
-                        projects.add(project);
-                    });
-                    ctx.response()
-                        .putHeader("Content-Type", "application/json")
-                        .end(projects.encode());
-                })
-                .onFailure(err -> ctx.fail(500, err));
+            projectId = Integer.parseInt(ctx.pathParam("project_id"));
         } catch (NumberFormatException e) {
-            ctx.response().setStatusCode(400).end("Invalid PM ID format");
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("project_id must be a number"));
+            return;
         }
+
+        dbClient.preparedQuery(PROJECT_DETAIL)
+            .execute(Tuple.of(projectId))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    ctx.response()
+                        .setStatusCode(404)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("error", "Project not found").encode());
+                    return;
+                }
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(rows.iterator().next().getString("detail"));
+            })
+            .onFailure(err -> {
+                log.error("project detail failed", kv("project_id", projectId), err);
+                ctx.fail(500, err);
+            });
     }
 
-    private String calculateRiskLevel(JsonObject project) {
-        if ("Completed".equals(project.getString("status"))) {
-            return "None";
-        }
-        
-        int daysRemaining = project.getInteger("days_remaining", 0);
-        double completionPercentage = project.getDouble("completion_percentage", 0.0);
-        
-        if (daysRemaining < 0) {
-            return "Critical";
-        }
-        
-        double requiredDailyProgress = (100 - completionPercentage) / Math.max(1, daysRemaining);
-        
-        if (requiredDailyProgress > 5) {
-            return "High";
-        } else if (requiredDailyProgress > 2) {
-            return "Medium";
-        } else if (completionPercentage < 30 && daysRemaining < 14) {
-            return "Medium";
-        } else {
-            return "Low";
+    // Project fields match getAllProjects; team members match TeamController.getTeamMembers
+    private static final String PROJECT_DETAIL = """
+        SELECT json_build_object(
+                   'project', to_json(p),
+                   'teams', COALESCE(teams.list, '[]'::json),
+                   'task_summary', summary.doc
+               )::text AS detail
+        FROM (
+            SELECT project_id, name, description, status, deadline, project_manager_id, created_at
+            FROM projects
+            WHERE project_id = $1
+        ) p
+        LEFT JOIN LATERAL (
+            SELECT json_agg(json_build_object(
+                       'team_id', t.team_id,
+                       'name', t.name,
+                       'description', t.description,
+                       'members', COALESCE(members.list, '[]'::json)
+                   ) ORDER BY t.name) AS list
+            FROM teams t
+            LEFT JOIN LATERAL (
+                SELECT json_agg(json_build_object(
+                           'id', u.user_id, 'name', u.full_name, 'email', u.email, 'role', tm.role
+                       ) ORDER BY tm.role, u.full_name) AS list
+                FROM team_members tm
+                JOIN users u ON u.user_id = tm.user_id
+                WHERE tm.team_id = t.team_id
+            ) members ON true
+            WHERE t.project_id = p.project_id
+        ) teams ON true
+        CROSS JOIN LATERAL (
+            SELECT json_build_object(
+                       'total', COALESCE(SUM(s.tasks), 0),
+                       'by_status', COALESCE(json_object_agg(COALESCE(s.status, 'None'), s.tasks), '{}'::json),
+                       'overdue', COALESCE(SUM(s.overdue), 0)
+                   ) AS doc
+            FROM (
+                SELECT status, COUNT(*) AS tasks,
+                       COUNT(*) FILTER (WHERE deadline < CURRENT_DATE AND status NOT IN ('Completed', 'Done')) AS overdue
+                FROM tasks
+                WHERE project_id = p.project_id
+                GROUP BY status
+            ) s
+        ) summary""";
+
+    // Portfolio of one project manager, served from the risk snapshot; see ProjectRisk
+    public void getProjectsByPm(RoutingContext ctx) {
+        int pmId;
+        try {
+            pmId = Integer.parseInt(ctx.request().getParam("pm"));
+        } catch (NumberFormatException e) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("pm must be a number"));
+            return;
         }
+        ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .end(projectRisk.portfolio(pmId));
     }
-    
-}
\ No newline at end of file
+}
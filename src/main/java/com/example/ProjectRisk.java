@@ -0,0 +1,259 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * In-memory snapshot of every project's progress and risk level.
+ *
+ * One set-based query aggregates tasks and teams per project (completion
+ * percentage, days remaining, team count); the risk level is derived from those
+ * figures by {@link #riskLevel}. Reads never touch the database: the portfolio
+ * of a project manager is rendered from the snapshot once and cached until the
+ * next refresh.
+ *
+ * Task and project writes mark their projects dirty; dirty projects are
+ * recomputed together after RISK_REFRESH_DEBOUNCE_MS, so a burst of writes costs
+ * one query restricted to those projects. Everything is recomputed every
+ * RISK_REFRESH_SECONDS, which also picks up team changes and writes made outside
+ * this process. Refreshes never overlap, so an older result cannot replace a newer one.
+ */
+public class ProjectRisk {
+    private static final Logger log = LoggerFactory.getLogger(ProjectRisk.class);
+
+    private static final String SELECT = """
+        SELECT p.project_id, p.name, p.description, p.status, p.deadline, p.project_manager_id, p.created_at,
+               COALESCE(t.total_tasks, 0) AS total_tasks,
+               COALESCE(t.completed_tasks, 0) AS completed_tasks,
+               COALESCE(tm.team_count, 0) AS team_count,
+               p.deadline - CURRENT_DATE AS days_remaining,
+               CASE
+                   WHEN p.status = 'Completed' THEN 100.0
+                   WHEN COALESCE(t.total_tasks, 0) = 0 THEN 0.0
+                   ELSE round(t.completed_tasks * 100.0 / t.total_tasks, 2)
+               END::float8 AS completion_percentage,
+               p.deadline - p.created_at::date AS planned_duration,
+               CURRENT_DATE - p.created_at::date AS elapsed_days
+        FROM projects p
+        LEFT JOIN (
+            SELECT project_id, COUNT(*) AS total_tasks,
+                   COUNT(*) FILTER (WHERE status IN ('Completed', 'Done')) AS completed_tasks
+            FROM tasks
+            %s
+            GROUP BY project_id
+        ) t ON t.project_id = p.project_id
+        LEFT JOIN (
+            SELECT project_id, COUNT(*) AS team_count
+            FROM teams
+            %s
+            GROUP BY project_id
+        ) tm ON tm.project_id = p.project_id
+        %s""";
+
+    private static final String REFRESH_ALL = SELECT.formatted("", "", "");
+    private static final String REFRESH_SOME = SELECT.formatted(
+        "WHERE project_id = ANY($1)", "WHERE project_id = ANY($1)", "WHERE p.project_id = ANY($1)");
+
+    // Newest project first, as getProjectsByPm always listed them
+    private static final Comparator<JsonObject> PORTFOLIO_ORDER = Comparator
+        .comparing((JsonObject project) -> project.getString("created_at"), Comparator.nullsLast(Comparator.reverseOrder()))
+        .thenComparing(project -> project.getInteger("project_id"));
+
+    // Every id that manages nothing shares this, so arbitrary ids cannot grow the cache
+    private static final Buffer NO_PROJECTS = Buffer.buffer("[]");
+
+    /** Immutable once published; only the rendered portfolios fill in lazily, and only for actual managers. */
+    private static final class Snapshot {
+        final Map<Integer, JsonObject> projects;
+        final Set<Integer> managers = new HashSet<>();
+        final Map<Integer, Buffer> portfolios = new ConcurrentHashMap<>();
+
+        Snapshot(Map<Integer, JsonObject> projects) {
+            this.projects = projects;
+            for (JsonObject project : projects.values()) {
+                Integer manager = project.getInteger("project_manager_id");
+                if (manager != null) {
+                    managers.add(manager);
+                }
+            }
+        }
+    }
+
+    private final PgPool dbClient;
+    private final Vertx vertx;
+    private final long debounceMs;
+    private volatile Snapshot snapshot = new Snapshot(Map.of());
+
+    // Guarded by this
+    private final Set<Integer> dirty = new HashSet<>();
+    private boolean fullPending;
+    private boolean scheduled;
+    private boolean running;
+
+    public ProjectRisk(PgPool dbClient, Vertx vertx) {
+        this.dbClient = dbClient;
+        this.vertx = vertx;
+        this.debounceMs = Math.max(1, DatabasePool.envInt("RISK_REFRESH_DEBOUNCE_MS", 500));
+    }
+
+    /** Recomputes every project now; completes once the new snapshot is published. */
+    public Future<Void> refreshAll() {
+        return query(null).map(rows -> {
+            snapshot = new Snapshot(toMap(rows, new HashMap<>()));
+            return null;
+        });
+    }
+
+    /** Schedules a full recomputation, coalesced with any pending refresh. */
+    public synchronized void requestRefresh() {
+        fullPending = true;
+        schedule();
+    }
+
+    /** Schedules a recomputation of one project after a write to it or its tasks. */
+    public synchronized void markDirty(Integer projectId) {
+        if (projectId == null) {
+            return;
+        }
+        dirty.add(projectId);
+        schedule();
+    }
+
+    /** As {@link #markDirty(Integer)} for both projects of a task that may have moved. */
+    public synchronized void markDirty(Integer previousProjectId, Integer projectId) {
+        markDirty(previousProjectId);
+        markDirty(projectId);
+    }
+
+    private void schedule() {
+        if (!scheduled && !running) {
+            scheduled = true;
+            vertx.setTimer(debounceMs, id -> runRefresh());
+        }
+    }
+
+    private void runRefresh() {
+        boolean full;
+        List<Integer> projectIds;
+        synchronized (this) {
+            scheduled = false;
+            running = true;
+            full = fullPending;
+            projectIds = new ArrayList<>(dirty);
+            fullPending = false;
+            dirty.clear();
+        }
+        long start = System.nanoTime();
+        Future<Void> refresh = full ? refreshAll() : refreshSome(projectIds);
+        refresh
+            .onSuccess(v -> log.debug("project risk refreshed", kv("full", full), kv("projects", projectIds.size()),
+                kv("ms", (System.nanoTime() - start) / 1_000_000)))
+            .onFailure(err -> log.warn("project risk refresh failed", kv("full", full), err))
+            .onComplete(ar -> {
+                synchronized (this) {
+                    running = false;
+                    if (ar.failed()) {
+                        // Kept for the next write or periodic pass rather than retried in a loop
+                        fullPending |= full;
+                        dirty.addAll(projectIds);
+                    } else if (fullPending || !dirty.isEmpty()) {
+                        schedule();
+                    }
+                }
+            });
+    }
+
+    private Future<Void> refreshSome(List<Integer> projectIds) {
+        return query(projectIds.toArray(new Integer[0])).map(rows -> {
+            Map<Integer, JsonObject> projects = new HashMap<>(snapshot.projects);
+            // A dirty project missing from the result was deleted
+            projectIds.forEach(projects::remove);
+            snapshot = new Snapshot(toMap(rows, projects));
+            return null;
+        });
+    }
+
+    private Future<RowSet<Row>> query(Integer[] projectIds) {
+        return projectIds == null
+            ? dbClient.query(REFRESH_ALL).execute()
+            : dbClient.preparedQuery(REFRESH_SOME).execute(Tuple.tuple().addArrayOfInteger(projectIds));
+    }
+
+    private static Map<Integer, JsonObject> toMap(RowSet<Row> rows, Map<Integer, JsonObject> projects) {
+        for (Row row : rows) {
+            JsonObject project = row.toJson();
+            project.put("risk_level", riskLevel(project.getString("status"),
+                row.getInteger("days_remaining"), row.getDouble("completion_percentage")));
+            projects.put(row.getInteger("project_id"), project);
+        }
+        return Map.copyOf(projects);
+    }
+
+    /** The projects managed by {@code pmId}, newest first, as a JSON array. */
+    public Buffer portfolio(int pmId) {
+        Snapshot current = snapshot;
+        if (!current.managers.contains(pmId)) {
+            return NO_PROJECTS;
+        }
+        return current.portfolios.computeIfAbsent(pmId, id -> {
+            List<JsonObject> projects = new ArrayList<>();
+            for (JsonObject project : current.projects.values()) {
+                if (id.equals(project.getInteger("project_manager_id"))) {
+                    projects.add(project);
+                }
+            }
+            projects.sort(PORTFOLIO_ORDER);
+            return new JsonArray(new ArrayList<>(projects)).toBuffer();
+        });
+    }
+
+    /**
+     * Risk from schedule pressure: the completion still needed per remaining day.
+     * A missing deadline counts as due today, as it always has.
+     */
+    static String riskLevel(String status, Integer daysRemaining, Double completionPercentage) {
+        if ("Completed".equals(status)) {
+            return "None";
+        }
+
+        int days = daysRemaining != null ? daysRemaining : 0;
+        double completion = completionPercentage != null ? completionPercentage : 0.0;
+
+        if (days < 0) {
+            return "Critical";
+        }
+
+        double requiredDailyProgress = (100 - completion) / Math.max(1, days);
+
+        if (requiredDailyProgress > 5) {
+            return "High";
+        } else if (requiredDailyProgress > 2) {
+            return "Medium";
+        } else if (completion < 30 && days < 14) {
+            return "Medium";
+        } else {
+            return "Low";
+        }
+    }
+}
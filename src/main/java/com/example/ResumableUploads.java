@@ -0,0 +1,488 @@
+package com.example;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Resumable uploads of large task documents, in three steps:
+ *
+ *   POST   /api/tasks/:task_id/uploads       {"file_name", "size", "content_type"?, "sha256"?}, 201 with upload_url
+ *   PUT    /api/uploads/:upload_id           raw bytes, with Upload-Offset: the offset they start at
+ *   POST   /api/uploads/:upload_id/complete  201 with the new task document
+ *
+ * plus GET/HEAD /api/uploads/:upload_id for the committed offset after a
+ * dropped connection, and DELETE to abandon an upload.
+ *
+ * Chunks stream straight into uploads/tmp/<upload_id>.part at their offset. A
+ * PUT must start at the committed offset (409 with the right one otherwise) and
+ * leases the upload while it writes, so concurrent PUTs cannot interleave. When
+ * the request ends, or the connection drops, whatever reached the file is synced
+ * to disk and the offset advances past it: a client resumes from there rather
+ * than from zero. Completion hashes the staging file and hands it to
+ * {@link BlobStore}, which hard-links it into blob storage; the bytes are never copied.
+ *
+ * Uploads untouched for UPLOAD_EXPIRE_HOURS are deleted by {@link #expire}, as
+ * are leftover temp files of that age.
+ */
+public class ResumableUploads {
+    private static final Logger log = LoggerFactory.getLogger(ResumableUploads.class);
+
+    static final String OFFSET_HEADER = "Upload-Offset";
+    static final long MAX_BYTES = DatabasePool.envInt("RESUMABLE_UPLOAD_MAX_MB", 2048) * 1024L * 1024L;
+    private static final int LEASE_SECONDS = DatabasePool.envInt("UPLOAD_CHUNK_LEASE_SECONDS", 600);
+
+    private static final String COLUMNS = """
+        upload_id::text AS upload_id, task_id, file_name, content_type, size, committed_offset AS "offset",
+        created_at, updated_at""";
+
+    // Creates nothing for a missing task
+    private static final String CREATE = """
+        INSERT INTO document_uploads (upload_id, task_id, file_name, content_type, size, sha256, created_by)
+        SELECT $1, task_id, $3, $4, $5, $6, $7 FROM tasks WHERE task_id = $2
+        RETURNING %s""".formatted(COLUMNS);
+
+    private static final String STATUS = "SELECT " + COLUMNS
+        + ", COALESCE(lease_until > now(), false) AS busy FROM document_uploads WHERE upload_id = $1";
+
+    // Takes the upload if nobody holds it and it is at the expected offset (null: complete)
+    private static final String LEASE = """
+        UPDATE document_uploads SET lease_until = now() + make_interval(secs => $3)
+        WHERE upload_id = $1
+          AND committed_offset = COALESCE($2, size)
+          AND (lease_until IS NULL OR lease_until < now())
+        RETURNING task_id, file_name, content_type, size, sha256, created_by""";
+
+    private static final String COMMIT = """
+        UPDATE document_uploads SET committed_offset = $2, lease_until = NULL, updated_at = now()
+        WHERE upload_id = $1""";
+
+    private static final String RELEASE = "UPDATE document_uploads SET lease_until = NULL WHERE upload_id = $1";
+
+    private final PgPool dbClient;
+    private final FileSystem fs;
+    private final BlobStore blobStore;
+    private final ChangeEvents changeEvents;
+
+    public ResumableUploads(Vertx vertx, PgPool dbClient, BlobStore blobStore, ChangeEvents changeEvents) {
+        this.dbClient = dbClient;
+        this.fs = vertx.fileSystem();
+        this.blobStore = blobStore;
+        this.changeEvents = changeEvents;
+    }
+
+    static String stagingPath(UUID uploadId) {
+        return BlobStore.TMP_DIR + "/" + uploadId + ".part";
+    }
+
+    public void create(RoutingContext ctx) {
+        int taskId;
+        String fileName;
+        long size;
+        String sha256;
+        JsonObject body;
+        try {
+            taskId = Integer.parseInt(ctx.pathParam("task_id"));
+            body = ctx.getBodyAsJson();
+            if (body == null) {
+                throw new IllegalArgumentException("Expected a JSON body");
+            }
+            fileName = body.getString("file_name");
+            if (fileName == null || fileName.isBlank()) {
+                throw new IllegalArgumentException("file_name is required");
+            }
+            Long declaredSize = body.getLong("size");
+            if (declaredSize == null || declaredSize < 1 || declaredSize > MAX_BYTES) {
+                throw new IllegalArgumentException("size must be between 1 and " + MAX_BYTES);
+            }
+            size = declaredSize;
+            sha256 = body.getString("sha256");
+            if (sha256 != null) {
+                sha256 = sha256.trim().toLowerCase(Locale.ROOT);
+                if (!sha256.matches("[0-9a-f]{64}")) {
+                    throw new IllegalArgumentException("sha256 must be 64 hex digits");
+                }
+            }
+        } catch (NumberFormatException e) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("task_id must be a number"));
+            return;
+        } catch (IllegalArgumentException | DecodeException | ClassCastException e) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException(e.getMessage()));
+            return;
+        }
+
+        dbClient.preparedQuery(CREATE)
+            .execute(Tuple.of(UUID.randomUUID(), taskId, fileName, body.getString("content_type"), size, sha256)
+                .addInteger(SessionTokens.userId(ctx)))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    sendError(ctx, 404, "Task not found");
+                    return;
+                }
+                JsonObject upload = rows.iterator().next().toJson();
+                String url = "/api/uploads/" + upload.getString("upload_id");
+                ctx.response()
+                    .setStatusCode(201)
+                    .putHeader("Content-Type", "application/json")
+                    .putHeader("Location", url)
+                    .putHeader(OFFSET_HEADER, "0")
+                    .end(upload.put("upload_url", url).encode());
+            })
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    public void status(RoutingContext ctx) {
+        UUID uploadId = uploadId(ctx);
+        if (uploadId == null) {
+            return;
+        }
+        dbClient.preparedQuery(STATUS).execute(Tuple.of(uploadId))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    sendError(ctx, 404, "Upload not found");
+                    return;
+                }
+                JsonObject upload = rows.iterator().next().toJson();
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .putHeader("Cache-Control", "no-store")
+                    .putHeader(OFFSET_HEADER, String.valueOf(upload.getLong("offset")))
+                    .end(upload.encode());
+            })
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    public void append(RoutingContext ctx) {
+        UUID uploadId = uploadId(ctx);
+        if (uploadId == null) {
+            return;
+        }
+        long offset;
+        Long length = null;
+        try {
+            offset = Long.parseLong(ctx.request().getHeader(OFFSET_HEADER).trim());
+            String contentLength = ctx.request().getHeader(HttpHeaders.CONTENT_LENGTH);
+            if (contentLength != null) {
+                length = Long.parseLong(contentLength);
+            }
+        } catch (NullPointerException | NumberFormatException e) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException(OFFSET_HEADER + " header must be a byte offset"));
+            return;
+        }
+
+        HttpServerRequest request = ctx.request();
+        // Hold the body until the upload is ours and the staging file is open
+        request.pause();
+        // A disconnect in the meantime is only seen through closed() below; receiveChunk takes over the handlers
+        request.exceptionHandler(err -> log.debug("upload connection lost before the chunk", kv("upload_id", uploadId)));
+        Long declaredLength = length;
+        dbClient.preparedQuery(LEASE).execute(Tuple.of(uploadId, offset, LEASE_SECONDS))
+            .onFailure(err -> rejectBody(ctx, 500, new JsonObject().put("error", "Database error")))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    conflict(ctx, uploadId);
+                    return;
+                }
+                if (ctx.response().closed()) {
+                    // Nobody is left to send the chunk
+                    release(uploadId);
+                    return;
+                }
+                long size = rows.iterator().next().getLong("size");
+                if (declaredLength != null && offset + declaredLength > size) {
+                    release(uploadId);
+                    rejectBody(ctx, 413, new JsonObject()
+                        .put("error", "Chunk runs past the declared size of " + size + " bytes")
+                        .put("offset", offset));
+                    return;
+                }
+                fs.open(stagingPath(uploadId), new OpenOptions().setWrite(true).setCreate(true))
+                    .onFailure(err -> {
+                        release(uploadId);
+                        rejectBody(ctx, 500, new JsonObject().put("error", "Upload storage unavailable"));
+                    })
+                    .onSuccess(file -> {
+                        if (ctx.response().closed()) {
+                            file.close();
+                            release(uploadId);
+                            return;
+                        }
+                        receiveChunk(ctx, uploadId, file, offset, size);
+                    });
+            });
+    }
+
+    private void receiveChunk(RoutingContext ctx, UUID uploadId, AsyncFile file, long offset, long size) {
+        HttpServerRequest request = ctx.request();
+        Promise<Void> done = Promise.promise();
+        long[] received = {0};
+        boolean[] writeFailed = {false};
+        // Past the lease another PUT may have taken over: stop writing before it does
+        long leaseDeadline = System.nanoTime() + (LEASE_SECONDS - 5) * 1_000_000_000L;
+
+        file.setWritePos(offset);
+        request.handler(chunk -> {
+            if (done.future().isComplete()) {
+                return;
+            }
+            if (offset + received[0] + chunk.length() > size) {
+                done.tryFail(new MultipartUpload.TooLarge(size - offset));
+                return;
+            }
+            if (System.nanoTime() > leaseDeadline) {
+                done.tryFail(new IllegalStateException("chunk outlived its lease"));
+                return;
+            }
+            received[0] += chunk.length();
+            file.write(chunk).onFailure(err -> {
+                writeFailed[0] = true;
+                done.tryFail(err);
+            });
+            if (file.writeQueueFull()) {
+                request.pause();
+                file.drainHandler(v -> request.resume());
+            }
+        });
+        request.exceptionHandler(done::tryFail);
+        request.endHandler(v -> done.tryComplete());
+        request.resume();
+
+        done.future().onComplete(ar -> file.close()
+            // close() waits for the writes in flight; then sync them before counting them committed
+            .compose(v -> writeFailed[0] ? Future.failedFuture("write failed") : sync(uploadId))
+            .compose(v -> dbClient.preparedQuery(COMMIT).execute(Tuple.of(uploadId, offset + received[0])))
+            .onComplete(committed -> {
+                if (committed.failed()) {
+                    log.warn("chunk not committed", kv("upload_id", uploadId), kv("offset", offset), committed.cause());
+                    release(uploadId);
+                }
+                long newOffset = committed.succeeded() ? offset + received[0] : offset;
+                if (ar.succeeded() && committed.succeeded()) {
+                    ctx.response()
+                        .setStatusCode(204)
+                        .putHeader(OFFSET_HEADER, String.valueOf(newOffset))
+                        .end();
+                } else if (ar.cause() instanceof MultipartUpload.TooLarge) {
+                    rejectBody(ctx, 413, new JsonObject()
+                        .put("error", "Chunk runs past the declared size of " + size + " bytes")
+                        .put("offset", newOffset));
+                } else if (!ctx.response().closed() && !ctx.response().ended()) {
+                    rejectBody(ctx, 500, new JsonObject().put("error", "Chunk not stored").put("offset", newOffset));
+                } else {
+                    log.debug("chunk interrupted", kv("upload_id", uploadId), kv("offset", newOffset));
+                }
+            }));
+    }
+
+    /** fsync of the staging file; any descriptor will do, the data belongs to the inode. */
+    private Future<Void> sync(UUID uploadId) {
+        return fs.open(stagingPath(uploadId), new OpenOptions().setWrite(true).setCreate(false))
+            .compose(file -> file.flush().eventually(() -> file.close()));
+    }
+
+    public void complete(RoutingContext ctx) {
+        UUID uploadId = uploadId(ctx);
+        if (uploadId == null) {
+            return;
+        }
+        dbClient.preparedQuery(LEASE).execute(Tuple.of(uploadId, null, LEASE_SECONDS))
+            .onFailure(err -> ctx.fail(500, err))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    conflict(ctx, uploadId);
+                    return;
+                }
+                Row row = rows.iterator().next();
+                int taskId = row.getInteger("task_id");
+                String path = stagingPath(uploadId);
+                hash(path).compose(sha256 -> {
+                    String expected = row.getString("sha256");
+                    if (expected != null && !expected.equals(sha256)) {
+                        return Future.failedFuture(new IllegalArgumentException(
+                            "Uploaded content does not match the declared sha256; upload discarded"));
+                    }
+                    MultipartUpload.Received upload = new MultipartUpload.Received(path, uploadId + ".part",
+                        row.getString("file_name"), row.getString("content_type"), row.getLong("size"), sha256);
+                    // Linked into blob storage, or dropped if the content is already there
+                    return blobStore.store(upload, (conn, blobPath) ->
+                        TaskDocumentController.attach(conn, taskId, upload, blobPath, row.getInteger("created_by"))
+                            .compose(result -> result == null
+                                ? Future.succeededFuture(null)
+                                : conn.preparedQuery("DELETE FROM document_uploads WHERE upload_id = $1")
+                                    .execute(Tuple.of(uploadId))
+                                    .map(result)));
+                })
+                .onSuccess(stored -> {
+                    if (stored.value == null) {
+                        sendError(ctx, 404, "Task not found");
+                        return;
+                    }
+                    JsonObject task = stored.value.getJsonObject("task");
+                    // Only document_path changed
+                    changeEvents.task("updated", task, task.getString("status"),
+                        task.getInteger("project_id"), task.getInteger("assigned_to"));
+                    JsonObject document = stored.value.getJsonObject("document")
+                        .put("deduplicated", stored.deduplicated);
+                    ctx.response()
+                        .setStatusCode(201)
+                        .putHeader("Content-Type", "application/json")
+                        .putHeader("Location", document.getString("download_url"))
+                        .end(document.encode());
+                })
+                .onFailure(err -> {
+                    if (err instanceof IllegalArgumentException) {
+                        discard(uploadId);
+                        Pagination.sendBadRequest(ctx, (IllegalArgumentException) err);
+                    } else {
+                        // The staging file is intact: the client can retry completion
+                        release(uploadId);
+                        ctx.fail(500, err);
+                    }
+                });
+            });
+    }
+
+    private Future<String> hash(String path) {
+        return fs.open(path, new OpenOptions().setRead(true)).compose(file -> {
+            Promise<String> hashed = Promise.promise();
+            MessageDigest digest = MultipartUpload.sha256();
+            file.setReadBufferSize(64 * 1024);
+            file.handler(buffer -> digest.update(buffer.getBytes()));
+            file.exceptionHandler(hashed::tryFail);
+            file.endHandler(v -> hashed.tryComplete(HexFormat.of().formatHex(digest.digest())));
+            return hashed.future().eventually(() -> file.close());
+        });
+    }
+
+    public void abort(RoutingContext ctx) {
+        UUID uploadId = uploadId(ctx);
+        if (uploadId == null) {
+            return;
+        }
+        dbClient.preparedQuery("""
+                DELETE FROM document_uploads
+                WHERE upload_id = $1 AND (lease_until IS NULL OR lease_until < now())""")
+            .execute(Tuple.of(uploadId))
+            .onSuccess(rows -> {
+                if (rows.rowCount() == 0) {
+                    conflict(ctx, uploadId);
+                    return;
+                }
+                fs.delete(stagingPath(uploadId)).onComplete(v -> ctx.response().setStatusCode(204).end());
+            })
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    /**
+     * Deletes uploads untouched for {@code hours} and temp files of that age under
+     * uploads/tmp (staging files of deleted tasks, remains of interrupted uploads).
+     */
+    public Future<Integer> expire(int hours) {
+        long cutoff = System.currentTimeMillis() - hours * 3_600_000L;
+        return dbClient.preparedQuery("""
+                DELETE FROM document_uploads
+                WHERE updated_at < now() - make_interval(hours => $1)
+                  AND (lease_until IS NULL OR lease_until < now())""")
+            .execute(Tuple.of(hours))
+            .compose(rows -> fs.readDir(BlobStore.TMP_DIR).compose(files -> {
+                List<Future<Void>> deletes = new ArrayList<>();
+                for (String file : files) {
+                    deletes.add(fs.props(file).compose(props -> props.lastModifiedTime() < cutoff
+                        ? fs.delete(file)
+                        : Future.succeededFuture()));
+                }
+                return Future.join(deletes).otherwiseEmpty().map(rows.rowCount());
+            }))
+            .onSuccess(expired -> {
+                if (expired > 0) {
+                    log.info("abandoned uploads expired", kv("uploads", expired));
+                }
+            });
+    }
+
+    private void discard(UUID uploadId) {
+        dbClient.preparedQuery("DELETE FROM document_uploads WHERE upload_id = $1").execute(Tuple.of(uploadId))
+            .onComplete(v -> fs.delete(stagingPath(uploadId)));
+    }
+
+    private void release(UUID uploadId) {
+        dbClient.preparedQuery(RELEASE).execute(Tuple.of(uploadId))
+            .onFailure(err -> log.warn("upload lease not released; it lapses on its own", kv("upload_id", uploadId), err));
+    }
+
+    /** 404 for an unknown upload, otherwise 409 with its committed offset (or that another request holds it). */
+    private void conflict(RoutingContext ctx, UUID uploadId) {
+        dbClient.preparedQuery(STATUS).execute(Tuple.of(uploadId))
+            .onFailure(err -> rejectBody(ctx, 500, new JsonObject().put("error", "Database error")))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    rejectBody(ctx, 404, new JsonObject().put("error", "Upload not found"));
+                    return;
+                }
+                Row row = rows.iterator().next();
+                long committed = row.getLong("offset");
+                String error = row.getBoolean("busy") ? "Another request is writing this upload"
+                    : committed < row.getLong("size") ? "Upload is at offset " + committed
+                    : "Upload is complete; finalize it";
+                ctx.response().putHeader(OFFSET_HEADER, String.valueOf(committed));
+                rejectBody(ctx, 409, new JsonObject().put("error", error).put("offset", committed));
+            });
+    }
+
+    /** Answers without reading the request body, then drops the connection so the body is not read either. */
+    private static void rejectBody(RoutingContext ctx, int status, JsonObject body) {
+        if (ctx.request().isEnded()) {
+            sendJson(ctx, status, body);
+            return;
+        }
+        ctx.response()
+            .setStatusCode(status)
+            .putHeader("Content-Type", "application/json")
+            .putHeader("Connection", "close")
+            .end(body.encode())
+            .onComplete(v -> ctx.request().connection().close());
+    }
+
+    private static UUID uploadId(RoutingContext ctx) {
+        try {
+            return UUID.fromString(ctx.pathParam("upload_id"));
+        } catch (IllegalArgumentException e) {
+            sendError(ctx, 404, "Upload not found");
+            return null;
+        }
+    }
+
+    private static void sendError(RoutingContext ctx, int status, String message) {
+        sendJson(ctx, status, new JsonObject().put("error", message));
+    }
+
+    private static void sendJson(RoutingContext ctx, int status, JsonObject body) {
+        ctx.response()
+            .setStatusCode(status)
+            .putHeader("Content-Type", "application/json")
+            .end(body.encode());
+    }
+}
@@ -0,0 +1,287 @@
+package com.example;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Serializes pg Rows straight into a pooled Netty buffer.
+ *
+ * Produces byte-for-byte the same JSON as row.toJson().encode(), without the
+ * per-row JsonObject/LinkedHashMap and without an intermediate String. Column
+ * names are encoded once per writer ({"task_id": / ,"title": ...), so a row is
+ * written as fixed fragments plus values. Integers, strings, booleans, dates and
+ * timestamps are encoded by hand; any other type goes through the regular Vert.x
+ * JSON codec so the output never diverges.
+ *
+ * Buffers come from the pooled allocator and must be handed to {@link #send},
+ * {@link #write} or {@link #end}, which release them once Netty has flushed the bytes.
+ */
+public class RowJsonWriter {
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private final String[] columns;
+    private final byte[][] fragments;
+
+    private RowJsonWriter(String[] columns) {
+        this.columns = columns;
+        this.fragments = new byte[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            fragments[i] = ((i == 0 ? "{" : ",") + Json.encode(columns[i]) + ":").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Writer for a fixed SELECT list; columns must be given in SELECT order. */
+    public static RowJsonWriter forColumns(String... columns) {
+        return new RowJsonWriter(columns);
+    }
+
+    public static ByteBuf allocate(int initialCapacity) {
+        return PooledByteBufAllocator.DEFAULT.directBuffer(initialCapacity);
+    }
+
+    /** True when the row has exactly this writer's columns, in order. */
+    public boolean matches(Row row) {
+        if (row.size() != columns.length) {
+            return false;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].equals(row.getColumnName(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Appends the row as a JSON object; rows of another shape fall back to their own column names. */
+    public void writeRow(Row row, ByteBuf out, boolean fixedShape) {
+        int size = row.size();
+        if (size == 0) {
+            out.writeByte('{');
+        }
+        for (int i = 0; i < size; i++) {
+            if (fixedShape) {
+                out.writeBytes(fragments[i]);
+            } else {
+                out.writeByte(i == 0 ? '{' : ',');
+                writeString(row.getColumnName(i), out);
+                out.writeByte(':');
+            }
+            writeValue(row.getValue(i), out);
+        }
+        out.writeByte('}');
+    }
+
+    /** Appends "[row,row,...]" for at most maxRows rows. */
+    public void writeArray(Iterable<Row> rows, int maxRows, ByteBuf out) {
+        out.writeByte('[');
+        int written = 0;
+        Boolean fixedShape = null;
+        for (Row row : rows) {
+            if (written == maxRows) {
+                break;
+            }
+            if (fixedShape == null) {
+                fixedShape = matches(row);
+            }
+            if (written > 0) {
+                out.writeByte(',');
+            }
+            writeRow(row, out, fixedShape);
+            written++;
+        }
+        out.writeByte(']');
+    }
+
+    /** Sends the buffer as the whole JSON response body, releasing it once written. */
+    public static void send(HttpServerResponse response, ByteBuf body) {
+        response.putHeader("Content-Type", "application/json");
+        end(response, body);
+    }
+
+    /** Writes a chunk, releasing it once written. */
+    public static void write(HttpServerResponse response, ByteBuf chunk) {
+        response.write(wrap(chunk)).onComplete(v -> chunk.release());
+    }
+
+    /** Writes the last chunk and ends the response, releasing the chunk once written. */
+    public static void end(HttpServerResponse response, ByteBuf chunk) {
+        response.end(wrap(chunk)).onComplete(v -> chunk.release());
+    }
+
+    // Deprecated in 4.5 for Vert.x 5's BufferInternal.buffer, which 4.x does not have; the one place to change
+    @SuppressWarnings("deprecation")
+    private static Buffer wrap(ByteBuf chunk) {
+        return Buffer.buffer(chunk);
+    }
+
+    static void writeValue(Object value, ByteBuf out) {
+        if (value == null) {
+            out.writeBytes(NULL);
+        } else if (value instanceof String) {
+            writeString((String) value, out);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            writeLong(((Number) value).longValue(), out);
+        } else if (value instanceof Boolean) {
+            out.writeBytes((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof LocalDate && isFourDigitYear(((LocalDate) value).getYear())) {
+            out.writeByte('"');
+            writeDate((LocalDate) value, out);
+            out.writeByte('"');
+        } else if (value instanceof LocalDateTime && isFourDigitYear(((LocalDateTime) value).getYear())) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            out.writeByte('"');
+            writeDate(dateTime.toLocalDate(), out);
+            out.writeByte('T');
+            writeTime(dateTime.toLocalTime(), out);
+            out.writeByte('"');
+        } else {
+            // Doubles, numerics, arrays, buffers, JSON columns...: same path as Row.toJson()
+            ByteBufUtil.writeUtf8(out, Json.encode(toJson(value)));
+        }
+    }
+
+    /** The conversion Row.toJson() applies to a column value before encoding it. */
+    static Object toJson(Object value) {
+        if (value == null || value == Tuple.JSON_NULL) {
+            return null;
+        }
+        if (value instanceof String || value instanceof Boolean || value instanceof Number || value instanceof Buffer
+            || value instanceof JsonObject || value instanceof JsonArray) {
+            return value;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            JsonArray array = new JsonArray(new ArrayList<>(length));
+            for (int i = 0; i < length; i++) {
+                array.add(toJson(Array.get(value, i)));
+            }
+            return array;
+        }
+        if (value instanceof Temporal && ((Temporal) value).isSupported(ChronoField.INSTANT_SECONDS)) {
+            return DateTimeFormatter.ISO_INSTANT.format((Temporal) value);
+        }
+        return value.toString();
+    }
+
+    static void writeString(String value, ByteBuf out) {
+        out.writeByte('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            if (i > start) {
+                ByteBufUtil.writeUtf8(out, value, start, i);
+            }
+            out.writeByte('\\');
+            switch (c) {
+                case '"': out.writeByte('"'); break;
+                case '\\': out.writeByte('\\'); break;
+                case '\b': out.writeByte('b'); break;
+                case '\t': out.writeByte('t'); break;
+                case '\n': out.writeByte('n'); break;
+                case '\f': out.writeByte('f'); break;
+                case '\r': out.writeByte('r'); break;
+                default:
+                    out.writeByte('u').writeByte('0').writeByte('0')
+                        .writeByte(HEX[c >> 4]).writeByte(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        if (start < length) {
+            ByteBufUtil.writeUtf8(out, value, start, length);
+        }
+        out.writeByte('"');
+    }
+
+    static void writeLong(long value, ByteBuf out) {
+        if (value == Long.MIN_VALUE) {
+            out.writeCharSequence(Long.toString(value), StandardCharsets.US_ASCII);
+            return;
+        }
+        if (value < 0) {
+            out.writeByte('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        out.ensureWritable(digits);
+        int index = out.writerIndex() + digits;
+        do {
+            out.setByte(--index, (int) ('0' + value % 10));
+            value /= 10;
+        } while (value != 0);
+        out.writerIndex(out.writerIndex() + digits);
+    }
+
+    private static boolean isFourDigitYear(int year) {
+        return year >= 0 && year <= 9999;
+    }
+
+    // ISO-8601 exactly as LocalDate.toString() prints it for years 0..9999
+    private static void writeDate(LocalDate date, ByteBuf out) {
+        writePadded(date.getYear(), 4, out);
+        out.writeByte('-');
+        writePadded(date.getMonthValue(), 2, out);
+        out.writeByte('-');
+        writePadded(date.getDayOfMonth(), 2, out);
+    }
+
+    // Same shape as LocalTime.toString(): HH:mm[:ss[.SSS|.SSSSSS|.SSSSSSSSS]]
+    private static void writeTime(LocalTime time, ByteBuf out) {
+        writePadded(time.getHour(), 2, out);
+        out.writeByte(':');
+        writePadded(time.getMinute(), 2, out);
+        int second = time.getSecond();
+        int nano = time.getNano();
+        if (second > 0 || nano > 0) {
+            out.writeByte(':');
+            writePadded(second, 2, out);
+            if (nano > 0) {
+                out.writeByte('.');
+                if (nano % 1_000_000 == 0) {
+                    writePadded(nano / 1_000_000, 3, out);
+                } else if (nano % 1000 == 0) {
+                    writePadded(nano / 1000, 6, out);
+                } else {
+                    writePadded(nano, 9, out);
+                }
+            }
+        }
+    }
+
+    private static void writePadded(int value, int width, ByteBuf out) {
+        out.ensureWritable(width);
+        int index = out.writerIndex() + width;
+        for (int i = 0; i < width; i++) {
+            out.setByte(--index, '0' + value % 10);
+            value /= 10;
+        }
+        out.writerIndex(out.writerIndex() + width);
+    }
+}
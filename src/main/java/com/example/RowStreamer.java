@@ -0,0 +1,125 @@
+package com.example;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PreparedStatement;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams a query result as a chunked JSON array straight from a Postgres cursor.
+ *
+ * Rows are fetched FETCH_SIZE at a time through a RowStream and written to the
+ * response as they arrive, so memory stays flat regardless of the result size.
+ * When the client reads slower than the database produces, the stream is paused
+ * until the response drains. Rows are encoded by a {@link RowJsonWriter}
+ * directly into pooled chunk buffers.
+ */
+public class RowStreamer {
+    private static final Logger log = LoggerFactory.getLogger(RowStreamer.class);
+
+    static final int FETCH_SIZE = 500;
+    private static final int FLUSH_BYTES = 16 * 1024;
+
+    private RowStreamer() {
+    }
+
+    public static void stream(PgPool dbClient, RoutingContext ctx, String sql, Tuple params, RowJsonWriter writer) {
+        dbClient.getConnection()
+            .onSuccess(conn -> conn.begin()
+                .onSuccess(tx -> conn.prepare(sql)
+                    .onSuccess(ps -> pipe(ctx, conn, tx, ps, params, writer))
+                    .onFailure(err -> {
+                        conn.close();
+                        ctx.fail(500, err);
+                    }))
+                .onFailure(err -> {
+                    conn.close();
+                    ctx.fail(500, err);
+                }))
+            .onFailure(err -> {
+                log.error("export connection failed", err);
+                ctx.fail(500, err);
+            });
+    }
+
+    private static void pipe(RoutingContext ctx, SqlConnection conn, Transaction tx, PreparedStatement ps, Tuple params,
+                             RowJsonWriter writer) {
+        HttpServerResponse response = ctx.response();
+        RowStream<Row> stream = ps.createStream(FETCH_SIZE, params);
+        ByteBuf[] pending = {RowJsonWriter.allocate(FLUSH_BYTES + 1024)};
+        Boolean[] fixedShape = {null};
+
+        boolean[] released = {false};
+        Runnable release = () -> {
+            if (!released[0]) {
+                released[0] = true;
+                if (pending[0] != null) {
+                    pending[0].release();
+                    pending[0] = null;
+                }
+                // Read-only cursor: rolling back just closes the portal
+                tx.rollback().onComplete(v -> ps.close().onComplete(c -> conn.close()));
+            }
+        };
+
+        response
+            .setChunked(true)
+            .putHeader("Content-Type", "application/json")
+            .write("[");
+
+        response.closeHandler(v -> {
+            stream.close();
+            release.run();
+        });
+
+        stream.exceptionHandler(err -> {
+            log.error("export query failed", err);
+            release.run();
+            // Headers are already on the wire, so the only honest signal left is an aborted response
+            response.reset();
+        });
+
+        stream.endHandler(v -> {
+            if (released[0]) {
+                return;
+            }
+            ByteBuf last = pending[0];
+            pending[0] = null;
+            last.writeByte(']');
+            RowJsonWriter.end(response, last);
+            release.run();
+        });
+
+        stream.handler(row -> {
+            if (released[0]) {
+                // Client went away; rows already fetched are still delivered after close()
+                return;
+            }
+            if (fixedShape[0] == null) {
+                fixedShape[0] = writer.matches(row);
+            } else {
+                pending[0].writeByte(',');
+            }
+            writer.writeRow(row, pending[0], fixedShape[0]);
+
+            // Batch rows into ~16 KB chunks rather than one chunk per row
+            if (pending[0].readableBytes() >= FLUSH_BYTES) {
+                RowJsonWriter.write(response, pending[0]);
+                pending[0] = RowJsonWriter.allocate(FLUSH_BYTES + 1024);
+                if (response.writeQueueFull()) {
+                    stream.pause();
+                    response.drainHandler(d -> stream.resume());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,225 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Versioned schema migrations, applied once at startup before any verticle is deployed.
+ *
+ * Scripts live in db/migration on the classpath as V{version}__{description}.sql
+ * and are listed in {@link #MIGRATIONS}; each runs in its own transaction and is
+ * recorded in schema_version with a CRC32 of its text. A session advisory lock
+ * serializes concurrent starts, so several replicas booting together apply each
+ * script exactly once. Scripts are written with IF NOT EXISTS, which lets the
+ * first run adopt a database whose tables predate this class.
+ *
+ * After migrating, {@link #reportIndexCoverage} checks the catalog for an index on
+ * every column the controllers filter or join on and logs any that are missing.
+ */
+public class SchemaManager {
+    private static final Logger log = LoggerFactory.getLogger(SchemaManager.class);
+
+    /** Applied in this order; append new scripts, never edit or reorder applied ones. */
+    static final List<String> MIGRATIONS = List.of(
+        "V1__baseline_tables.sql",
+        "V2__task_list_indexes.sql",
+        "V3__hot_query_indexes.sql",
+        "V4__task_board_ranks.sql",
+        "V5__document_blobs.sql",
+        "V6__task_documents.sql",
+        "V7__document_uploads.sql",
+        "V8__drop_task_document_index.sql");
+
+    // Arbitrary, fixed key for pg_advisory_lock ("pmschema")
+    private static final long LOCK_KEY = 0x706d736368656d61L;
+
+    private static final String CREATE_VERSION_TABLE = """
+        CREATE TABLE IF NOT EXISTS schema_version (
+            version      INTEGER PRIMARY KEY,
+            description  TEXT NOT NULL,
+            checksum     BIGINT NOT NULL,
+            installed_at TIMESTAMP NOT NULL DEFAULT now(),
+            execution_ms BIGINT NOT NULL
+        )""";
+
+    // Leading key column of every valid, non-partial index in the current schema
+    private static final String INDEX_CATALOG = """
+        SELECT c.relname AS table_name, a.attname AS column_name
+        FROM pg_index i
+        JOIN pg_class c ON c.oid = i.indrelid
+        JOIN pg_namespace n ON n.oid = c.relnamespace AND n.nspname = current_schema()
+        JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+        WHERE i.indisvalid AND i.indpred IS NULL""";
+
+    static final class Migration {
+        final int version;
+        final String description;
+        final String script;
+        final long checksum;
+
+        Migration(String fileName, String script) {
+            int separator = fileName.indexOf("__");
+            if (!fileName.startsWith("V") || separator < 0 || !fileName.endsWith(".sql")) {
+                throw new IllegalArgumentException("Migration must be named V<version>__<description>.sql: " + fileName);
+            }
+            this.version = Integer.parseInt(fileName.substring(1, separator));
+            this.description = fileName.substring(separator + 2, fileName.length() - 4).replace('_', ' ');
+            this.script = script;
+            CRC32 crc = new CRC32();
+            crc.update(script.getBytes(StandardCharsets.UTF_8));
+            this.checksum = crc.getValue();
+        }
+    }
+
+    /** A controller query and the column an index must lead with to serve it. */
+    static final class HotQuery {
+        final String name;
+        final String table;
+        final String column;
+
+        HotQuery(String name, String table, String column) {
+            this.name = name;
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    static final List<HotQuery> HOT_QUERIES = List.of(
+        new HotQuery("AuthHandler login / UserCache lookup", "users", "full_name"),
+        new HotQuery("UserController users by role", "users", "role"),
+        new HotQuery("TeamController my teams / team dashboard", "team_members", "user_id"),
+        new HotQuery("TeamController team members", "team_members", "team_id"),
+        new HotQuery("TeamController teams by project", "teams", "project_id"),
+        new HotQuery("Team dashboard projects join", "projects", "team_id"),
+        new HotQuery("ProjectController manager projects", "projects", "project_manager_id"),
+        new HotQuery("TaskController user tasks", "tasks", "assigned_to"),
+        new HotQuery("TaskController tasks by project", "tasks", "project_id"),
+        new HotQuery("TaskQuery status filter", "tasks", "status"),
+        new HotQuery("TaskQuery deadline filter and sort", "tasks", "deadline"),
+        new HotQuery("TaskQuery created_at filter and sort", "tasks", "created_at"),
+        new HotQuery("TaskDocumentController documents of a task", "task_documents", "task_id"));
+
+    private final PgPool dbClient;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaManager(PgPool dbClient) {
+        this.dbClient = dbClient;
+        for (String fileName : MIGRATIONS) {
+            migrations.add(new Migration(fileName, load("db/migration/" + fileName)));
+        }
+    }
+
+    private static String load(String resource) {
+        try (InputStream in = SchemaManager.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing migration " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Applies pending migrations, then logs the index coverage report. Fails if any script fails. */
+    public Future<Void> migrate() {
+        return dbClient.getConnection().compose(conn -> conn.query("SELECT pg_advisory_lock(" + LOCK_KEY + ")").execute()
+            // IF NOT EXISTS on an existing object raises a NOTICE; keep them out of the log
+            .compose(v -> conn.query("SET client_min_messages = warning").execute())
+            .compose(v -> conn.query(CREATE_VERSION_TABLE).execute())
+            .compose(v -> conn.query("SELECT version, checksum FROM schema_version").execute())
+            .compose(rows -> applyPending(conn, applied(rows)))
+            // The connection goes back to the shared pool: undo the session setting first
+            .eventually(() -> conn.query("RESET client_min_messages").execute()
+                .eventually(() -> conn.query("SELECT pg_advisory_unlock(" + LOCK_KEY + ")").execute())
+                .eventually(() -> conn.close())))
+            .compose(v -> reportIndexCoverage())
+            .mapEmpty();
+    }
+
+    private static Map<Integer, Long> applied(RowSet<Row> rows) {
+        Map<Integer, Long> applied = new HashMap<>();
+        rows.forEach(row -> applied.put(row.getInteger("version"), row.getLong("checksum")));
+        return applied;
+    }
+
+    private Future<Void> applyPending(SqlConnection conn, Map<Integer, Long> applied) {
+        Future<Void> chain = Future.succeededFuture();
+        int pending = 0;
+        for (Migration migration : migrations) {
+            Long checksum = applied.get(migration.version);
+            if (checksum == null) {
+                pending++;
+                chain = chain.compose(v -> apply(conn, migration));
+            } else if (checksum != migration.checksum) {
+                log.warn("applied migration was modified", kv("version", migration.version),
+                    kv("description", migration.description));
+            }
+        }
+        if (pending == 0) {
+            log.info("schema up to date", kv("version", migrations.get(migrations.size() - 1).version));
+        }
+        return chain;
+    }
+
+    private Future<Void> apply(SqlConnection conn, Migration migration) {
+        long start = System.nanoTime();
+        return conn.begin().compose(tx -> conn.query(migration.script).execute()
+            .compose(v -> conn.preparedQuery(
+                "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES ($1, $2, $3, $4)")
+                .execute(Tuple.of(migration.version, migration.description, migration.checksum,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))))
+            .compose(v -> tx.commit())
+            .recover(err -> tx.rollback().transform(ar -> Future.<Void>failedFuture(err))))
+            .onSuccess(v -> log.info("migration applied", kv("version", migration.version),
+                kv("description", migration.description),
+                kv("ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))))
+            .onFailure(err -> log.error("migration failed", kv("version", migration.version),
+                kv("description", migration.description), err));
+    }
+
+    /** Logs every {@link #HOT_QUERIES} entry that no valid index can serve; resolves to their names. */
+    public Future<List<String>> reportIndexCoverage() {
+        return dbClient.query(INDEX_CATALOG).execute().map(rows -> {
+            List<String> uncovered = new ArrayList<>();
+            for (HotQuery query : HOT_QUERIES) {
+                if (!covered(query, rows)) {
+                    uncovered.add(query.name);
+                    log.warn("query not covered by an index", kv("query", query.name), kv("table", query.table),
+                        kv("column", query.column));
+                }
+            }
+            log.info("index coverage", kv("queries", HOT_QUERIES.size()), kv("uncovered", uncovered.size()));
+            return uncovered;
+        });
+    }
+
+    private static boolean covered(HotQuery query, RowSet<Row> indexes) {
+        for (Row index : indexes) {
+            if (query.table.equals(index.getString("table_name"))
+                && query.column.equals(index.getString("column_name"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.JWTOptions;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import io.vertx.ext.web.RoutingContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Issues and verifies the HS256 session tokens returned by /login.
+ *
+ * A token carries user_id, full_name and role, so authenticated requests get
+ * their identity from a signature check instead of a users lookup. The key is
+ * JWT_SECRET; without it a random key is generated, which means tokens do not
+ * survive a restart and are not accepted by other nodes.
+ */
+public class SessionTokens {
+    private static final Logger log = LoggerFactory.getLogger(SessionTokens.class);
+
+    private final JWTAuth provider;
+    private final int expiresInSeconds;
+
+    public SessionTokens(Vertx vertx) {
+        String secret = System.getenv("JWT_SECRET");
+        if (secret == null || secret.isBlank()) {
+            log.warn("JWT_SECRET is not set; using a random key, sessions end on restart");
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            secret = Base64.getEncoder().encodeToString(random);
+        }
+        this.provider = JWTAuth.create(vertx, new JWTAuthOptions()
+            .addPubSecKey(new PubSecKeyOptions().setAlgorithm("HS256").setBuffer(secret)));
+        this.expiresInSeconds = DatabasePool.envInt("JWT_EXPIRES_MINUTES", 480) * 60;
+    }
+
+    public String issue(int userId, String fullName, String role) {
+        return provider.generateToken(
+            new JsonObject().put("user_id", userId).put("full_name", fullName).put("role", role),
+            new JWTOptions().setAlgorithm("HS256").setSubject(String.valueOf(userId))
+                .setExpiresInSeconds(expiresInSeconds));
+    }
+
+    public int expiresInSeconds() {
+        return expiresInSeconds;
+    }
+
+    /**
+     * Router-level handler: verifies a Bearer token when one is sent and sets ctx.user().
+     * Requests without a token pass through; routes that need an identity add {@link #requireUser}.
+     */
+    public void authenticate(RoutingContext ctx) {
+        String header = ctx.request().getHeader("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            ctx.next();
+            return;
+        }
+        // Hold the body while verifying; resume() only delivers on a later tick, by which
+        // time the body handler (or upload stream) downstream has installed its handlers
+        ctx.request().pause();
+        provider.authenticate(new TokenCredentials(header.substring(7).trim()))
+            .onComplete(ar -> ctx.request().resume())
+            .onSuccess(user -> {
+                ctx.setUser(user);
+                ctx.next();
+            })
+            .onFailure(err -> unauthorized(ctx, "Invalid or expired token"));
+    }
+
+    public void requireUser(RoutingContext ctx) {
+        if (ctx.user() == null) {
+            unauthorized(ctx, "Authentication required");
+            return;
+        }
+        ctx.next();
+    }
+
+    /** user_id claim of the authenticated caller, or null for anonymous requests. */
+    public static Integer userId(RoutingContext ctx) {
+        User user = ctx.user();
+        if (user == null) {
+            return null;
+        }
+        Object userId = user.get("user_id");
+        return userId instanceof Number ? ((Number) userId).intValue() : null;
+    }
+
+    public static String role(RoutingContext ctx) {
+        User user = ctx.user();
+        return user == null ? null : user.get("role");
+    }
+
+    private static void unauthorized(RoutingContext ctx, String message) {
+        ctx.response()
+            .setStatusCode(401)
+            .putHeader("Content-Type", "application/json")
+            .putHeader("WWW-Authenticate", "Bearer")
+            .end(new JsonObject().put("error", message).encode());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide state built once in Main and handed to every MainVerticle instance.
+ *
+ * Everything here is shared across event loops, so members must be thread-safe.
+ */
+public class SharedServices {
+    private static final Logger log = LoggerFactory.getLogger(SharedServices.class);
+
+    final PgPool dbClient;
+    final Metrics metrics;
+    final StatusCounts taskStatusCounts;
+    final StatusCounts projectStatusCounts;
+    final ProjectRisk projectRisk;
+    final ChangeNotifier changeNotifier;
+    final ChangeEvents changeEvents;
+    final UserCache userCache;
+    final BlobStore blobStore;
+    final ResumableUploads resumableUploads;
+    final SessionTokens sessionTokens;
+    final PasswordHasher passwordHasher;
+
+    public SharedServices(Vertx vertx, PgPool dbClient, Metrics metrics) {
+        this.dbClient = dbClient;
+        this.metrics = metrics;
+        this.taskStatusCounts = new StatusCounts(dbClient, "tasks");
+        this.projectStatusCounts = new StatusCounts(dbClient, "projects");
+        this.projectRisk = new ProjectRisk(dbClient, vertx);
+        this.userCache = new UserCache(dbClient);
+        this.changeNotifier = new ChangeNotifier(vertx, dbClient, taskStatusCounts, projectStatusCounts, userCache,
+            projectRisk);
+        this.changeEvents = new ChangeEvents(vertx, changeNotifier);
+        this.blobStore = new BlobStore(dbClient, vertx);
+        this.resumableUploads = new ResumableUploads(vertx, dbClient, blobStore, changeEvents);
+        this.sessionTokens = new SessionTokens(vertx);
+        this.passwordHasher = new PasswordHasher(vertx);
+    }
+
+    /** Loads the in-memory aggregates, schedules their reconciliation and storage cleanup, and listens for other nodes' writes. */
+    public Future<Void> start(Vertx vertx) {
+        long reconcileMs = DatabasePool.envInt("STATUS_RECONCILE_SECONDS", 60) * 1000L;
+        long riskRefreshMs = DatabasePool.envInt("RISK_REFRESH_SECONDS", 60) * 1000L;
+        long blobGcMs = DatabasePool.envInt("BLOB_GC_SECONDS", 300) * 1000L;
+        // Covers an X-Content-SHA256 upload streaming between its existence check and its attach
+        int blobGraceSeconds = DatabasePool.envInt("BLOB_GC_GRACE_SECONDS", 600);
+        int uploadExpireHours = DatabasePool.envInt("UPLOAD_EXPIRE_HOURS", 24);
+
+        return Future.all(taskStatusCounts.reconcile(), projectStatusCounts.reconcile(), projectRisk.refreshAll(),
+                changeNotifier.start())
+            .onSuccess(v -> {
+                vertx.setPeriodic(reconcileMs, id -> {
+                    taskStatusCounts.reconcile()
+                        .onFailure(err -> log.warn("task status reconcile failed", err));
+                    projectStatusCounts.reconcile()
+                        .onFailure(err -> log.warn("project status reconcile failed", err));
+                });
+                vertx.setPeriodic(riskRefreshMs, id -> projectRisk.requestRefresh());
+                vertx.setPeriodic(blobGcMs, id -> {
+                    blobStore.collectGarbage(blobGraceSeconds)
+                        .onFailure(err -> log.warn("document blob collection failed", err));
+                    resumableUploads.expire(uploadExpireHours)
+                        .onFailure(err -> log.warn("upload expiry failed", err));
+                });
+            })
+            .mapEmpty();
+    }
+}
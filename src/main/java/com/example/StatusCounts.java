@@ -0,0 +1,107 @@
+package com.example;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+
+/**
+ * In-memory "status -> row count" aggregate for one table.
+ *
+ * Loaded once with a GROUP BY, then kept current by the create/update/delete
+ * handlers, and periodically reconciled against the database to correct any
+ * drift (writes made outside this process, cascaded deletes, races between a
+ * reconcile and an in-flight write). Reads never touch the database; the JSON
+ * body is cached until the next change.
+ */
+public class StatusCounts {
+    private final PgPool dbClient;
+    private final String table;
+    private final Map<String, AtomicLong> counts = new ConcurrentSkipListMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile CachedJson cached;
+
+    private static final class CachedJson {
+        final long version;
+        final Buffer body;
+
+        CachedJson(long version, Buffer body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    public StatusCounts(PgPool dbClient, String table) {
+        this.dbClient = dbClient;
+        this.table = table;
+    }
+
+    /** Replaces all counts with a fresh GROUP BY over the table. */
+    public Future<Void> reconcile() {
+        return dbClient.query("SELECT status, COUNT(*) AS count FROM " + table + " GROUP BY status")
+            .execute()
+            .map(rows -> {
+                Map<String, Long> fresh = new HashMap<>();
+                for (Row row : rows) {
+                    String status = row.getString("status");
+                    if (status != null) {
+                        fresh.put(status, row.getLong("count"));
+                    }
+                }
+                counts.keySet().removeIf(status -> !fresh.containsKey(status));
+                fresh.forEach((status, count) -> counts.computeIfAbsent(status, s -> new AtomicLong()).set(count));
+                version.incrementAndGet();
+                return null;
+            });
+    }
+
+    public void increment(String status) {
+        add(status, 1);
+    }
+
+    public void decrement(String status) {
+        add(status, -1);
+    }
+
+    /** Moves one row from oldStatus to newStatus; no-op when unchanged. */
+    public void move(String oldStatus, String newStatus) {
+        if (oldStatus != null && oldStatus.equals(newStatus)) {
+            return;
+        }
+        decrement(oldStatus);
+        increment(newStatus);
+    }
+
+    private void add(String status, long delta) {
+        if (status == null) {
+            return;
+        }
+        counts.computeIfAbsent(status, s -> new AtomicLong()).addAndGet(delta);
+        version.incrementAndGet();
+    }
+
+    /** {"status": count, ...} for every status with at least one row. */
+    public Buffer toJson() {
+        long current = version.get();
+        CachedJson json = cached;
+        if (json == null || json.version != current) {
+            JsonObject result = new JsonObject();
+            counts.forEach((status, count) -> {
+                long value = count.get();
+                if (value > 0) {
+                    result.put(status, value);
+                }
+            });
+            // Tagged with the version read before building, so a concurrent change forces a rebuild
+            json = new CachedJson(current, result.toBuffer());
+            cached = json;
+        }
+        return json.body;
+    }
+}
@@ -0,0 +1,278 @@
+package com.example;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgException;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * POST /api/tasks/batch and PATCH /api/tasks/batch: many tasks per request, one transaction.
+ *
+ * The body is a JSON array. Every item is validated before anything is written;
+ * if any item is invalid the response is 400 listing each bad index and nothing
+ * changes. Valid batches go to the database through executeBatch, which pipelines
+ * all items of one statement on a single connection, so N tasks cost one HTTP
+ * request and a handful of round trips instead of N of each. Creates share one
+ * INSERT; patches share one UPDATE per field mask (see {@link TaskPatch}), one
+ * executeBatch per run of consecutive items with the same mask.
+ *
+ * Results come back in request order as {"results": [{"index", "status", "task" | "error"}]}.
+ * A patch of a missing task_id is a per-item 404 and does not abort the batch; a
+ * constraint violation (unknown project_id, for example) rolls everything back with 409.
+ */
+public class TaskBatchController {
+    private static final Logger log = LoggerFactory.getLogger(TaskBatchController.class);
+
+    static final int MAX_ITEMS = DatabasePool.envInt("TASK_BATCH_MAX_ITEMS", 1000);
+
+    private static final String INSERT = "INSERT INTO tasks (title, description, status, priority, deadline, project_id, assigned_to) "
+        + "VALUES ($1, $2, $3, $4, $5, $6, $7) RETURNING " + TaskController.ALL_COLUMNS;
+
+    private final PgPool dbClient;
+    private final StatusCounts statusCounts;
+    private final ProjectRisk projectRisk;
+    private final ChangeEvents changeEvents;
+
+    public TaskBatchController(PgPool dbClient, StatusCounts statusCounts, ProjectRisk projectRisk,
+                               ChangeEvents changeEvents) {
+        this.dbClient = dbClient;
+        this.statusCounts = statusCounts;
+        this.projectRisk = projectRisk;
+        this.changeEvents = changeEvents;
+    }
+
+    public void createTasks(RoutingContext ctx) {
+        JsonArray items = items(ctx);
+        if (items == null) {
+            return;
+        }
+
+        List<Tuple> tuples = new ArrayList<>(items.size());
+        JsonArray invalid = new JsonArray();
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                tuples.add(insertTuple(item(items, i)));
+            } catch (IllegalArgumentException e) {
+                invalid.add(new JsonObject().put("index", i).put("error", e.getMessage()));
+            }
+        }
+        if (!invalid.isEmpty()) {
+            sendInvalid(ctx, invalid);
+            return;
+        }
+
+        dbClient.withTransaction(conn -> conn.preparedQuery(INSERT).executeBatch(tuples))
+            .onSuccess(rows -> {
+                JsonArray results = new JsonArray();
+                int index = 0;
+                for (RowSet<Row> rs = rows; rs != null; rs = rs.next()) {
+                    Row created = rs.iterator().next();
+                    statusCounts.increment(created.getString("status"));
+                    projectRisk.markDirty(created.getInteger("project_id"));
+                    JsonObject task = created.toJson();
+                    changeEvents.task("created", task, null, null, null);
+                    results.add(new JsonObject().put("index", index++).put("status", 201).put("task", task));
+                }
+                send(ctx, 201, results);
+            })
+            .onFailure(err -> sendFailure(ctx, "batch create failed", items.size(), err));
+    }
+
+    public void updateTasks(RoutingContext ctx) {
+        JsonArray items = items(ctx);
+        if (items == null) {
+            return;
+        }
+
+        // Consecutive items with the same field mask share one executeBatch; items are
+        // applied in request order, so repeated task_ids behave as sequential PATCHes
+        List<List<Integer>> runs = new ArrayList<>();
+        int[] masks = new int[items.size()];
+        Tuple[] tuples = new Tuple[items.size()];
+        JsonArray invalid = new JsonArray();
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                JsonObject item = item(items, i);
+                Integer taskId = item.getInteger("task_id");
+                if (taskId == null) {
+                    throw new IllegalArgumentException("task_id is required");
+                }
+                TaskPatch patch = TaskPatch.from(item);
+                tuples[i] = patch.tuple(taskId);
+                masks[i] = patch.mask();
+                if (runs.isEmpty() || masks[runs.get(runs.size() - 1).get(0)] != masks[i]) {
+                    runs.add(new ArrayList<>());
+                }
+                runs.get(runs.size() - 1).add(i);
+            } catch (IllegalArgumentException | ClassCastException e) {
+                String message = e instanceof ClassCastException ? "task_id must be a number" : e.getMessage();
+                invalid.add(new JsonObject().put("index", i).put("error", message));
+            }
+        }
+        if (!invalid.isEmpty()) {
+            sendInvalid(ctx, invalid);
+            return;
+        }
+
+        Row[] updated = new Row[items.size()];
+        // All runs are sent without waiting: one connection executes them in order, pipelined
+        dbClient.withTransaction(conn -> {
+            List<Future<Void>> pending = new ArrayList<>(runs.size());
+            for (List<Integer> run : runs) {
+                pending.add(executeRun(conn, TaskPatch.sql(masks[run.get(0)]), run, tuples, updated));
+            }
+            return Future.all(pending);
+        })
+            .onSuccess(v -> {
+                JsonArray results = new JsonArray();
+                for (int i = 0; i < updated.length; i++) {
+                    Row row = updated[i];
+                    if (row == null) {
+                        results.add(new JsonObject().put("index", i).put("status", 404).put("error", "Task not found"));
+                        continue;
+                    }
+                    statusCounts.move(row.getString("previous_status"), row.getString("status"));
+                    projectRisk.markDirty(row.getInteger("previous_project_id"), row.getInteger("project_id"));
+                    JsonObject task = row.toJson();
+                    task.remove("previous_status");
+                    task.remove("previous_project_id");
+                    task.remove("previous_assigned_to");
+                    changeEvents.task("updated", task, row.getString("previous_status"),
+                        row.getInteger("previous_project_id"), row.getInteger("previous_assigned_to"));
+                    results.add(new JsonObject().put("index", i).put("status", 200).put("task", task));
+                }
+                send(ctx, 200, results);
+            })
+            .onFailure(err -> sendFailure(ctx, "batch update failed", items.size(), err));
+    }
+
+    private static Future<Void> executeRun(SqlConnection conn, String sql, List<Integer> indexes, Tuple[] tuples, Row[] updated) {
+        List<Tuple> batch = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            batch.add(tuples[index]);
+        }
+        return conn.preparedQuery(sql).executeBatch(batch).map(rows -> {
+            int position = 0;
+            for (RowSet<Row> rs = rows; rs != null; rs = rs.next()) {
+                int index = indexes.get(position++);
+                if (rs.size() > 0) {
+                    updated[index] = rs.iterator().next();
+                }
+            }
+            return null;
+        });
+    }
+
+    private static Tuple insertTuple(JsonObject task) {
+        try {
+            String deadline = task.getString("deadline");
+            return Tuple.of(
+                requireTitle(task.getString("title")),
+                task.getString("description", ""),
+                task.getString("status", "Pending"),
+                task.getString("priority"),
+                deadline != null ? LocalDate.parse(deadline) : null,
+                task.getInteger("project_id"),
+                task.getInteger("assigned_to"));
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("A field has the wrong type");
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid deadline format. Expected YYYY-MM-DD");
+        }
+    }
+
+    private static String requireTitle(String title) {
+        if (title == null || title.isBlank()) {
+            throw new IllegalArgumentException("title is required");
+        }
+        return title;
+    }
+
+    private static JsonObject item(JsonArray items, int index) {
+        Object item = items.getValue(index);
+        if (!(item instanceof JsonObject)) {
+            throw new IllegalArgumentException("Item must be a JSON object");
+        }
+        return (JsonObject) item;
+    }
+
+    /** The request body as a non-empty array of at most MAX_ITEMS; null after answering 400. */
+    private static JsonArray items(RoutingContext ctx) {
+        JsonArray items;
+        try {
+            items = ctx.body().asJsonArray();
+        } catch (DecodeException | ClassCastException e) {
+            items = null;
+        }
+        if (items == null || items.isEmpty()) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("Body must be a non-empty JSON array of tasks"));
+            return null;
+        }
+        if (items.size() > MAX_ITEMS) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("At most " + MAX_ITEMS + " tasks per batch"));
+            return null;
+        }
+        return items;
+    }
+
+    private static void sendInvalid(RoutingContext ctx, JsonArray invalid) {
+        ctx.response()
+            .setStatusCode(400)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject()
+                .put("error", "Invalid items; nothing was written")
+                .put("items", invalid)
+                .encode());
+    }
+
+    private static void send(RoutingContext ctx, int status, JsonArray results) {
+        ctx.response()
+            .setStatusCode(status)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("results", results).encode());
+    }
+
+    private static void sendFailure(RoutingContext ctx, String message, int items, Throwable err) {
+        if (sendConstraintConflict(ctx, err, "Batch rejected by a database constraint; nothing was written")) {
+            return;
+        }
+        log.error(message, kv("items", items), err);
+        ctx.fail(500, err);
+    }
+
+    /**
+     * Answers 409 with {@code error} and the database's message if {@code err} is an
+     * integrity constraint violation (class 23: foreign key, not null...), as for an
+     * unknown project_id or assigned_to. Returns whether it did.
+     */
+    static boolean sendConstraintConflict(RoutingContext ctx, Throwable err, String error) {
+        if (!(err instanceof PgException) || !((PgException) err).getSqlState().startsWith("23")) {
+            return false;
+        }
+        ctx.response()
+            .setStatusCode(409)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject()
+                .put("error", error)
+                .put("details", ((PgException) err).getErrorMessage())
+                .encode());
+        return true;
+    }
+}
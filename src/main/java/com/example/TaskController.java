@@ -3,44 +3,82 @@ package com.example;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.Arrays;
-import java.util.List;
-import java.util.UUID;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.FileUpload;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.Tuple;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
 
 public class TaskController {
+    private static final Logger log = LoggerFactory.getLogger(TaskController.class);
+
+    // Must match TaskQuery.COLUMNS and the SELECT list of exportTasks
+    private static final RowJsonWriter TASK_JSON = RowJsonWriter.forColumns(
+        "task_id", "title", "description", "status", "deadline", "project_id", "assigned_to", "created_at");
+
+    // Every column the API exposes; status_rank/priority_rank are sort keys only
+    static final String ALL_COLUMNS =
+        "task_id, title, description, status, priority, deadline, project_id, assigned_to, document_path, created_at, updated_at";
+
+    // Board column labels, indexed by status_rank - 1 (see V4__task_board_ranks.sql)
+    static final String[] BOARD_COLUMNS = {"Not Started", "In Progress", "Completed", "Pending", "Done", "Other"};
+    private static final int BOARD_DEFAULT_LIMIT = 50;
+    private static final int BOARD_MAX_LIMIT = 500;
+
     private final PgPool dbClient;
     private final Vertx vertx;
+    private final StatusCounts statusCounts;
+    private final UserCache userCache;
+    private final ProjectRisk projectRisk;
+    private final ChangeEvents changeEvents;
 
-    public TaskController(PgPool dbClient, Vertx vertx) {
+    public TaskController(PgPool dbClient, Vertx vertx, StatusCounts statusCounts, UserCache userCache,
+                          ProjectRisk projectRisk, ChangeEvents changeEvents) {
         this.dbClient = dbClient;
         this.vertx = vertx;
+        this.statusCounts = statusCounts;
+        this.userCache = userCache;
+        this.projectRisk = projectRisk;
+        this.changeEvents = changeEvents;
     }
 
+    // Filters, sort and keyset cursor are compiled by TaskQuery; see there for the parameters
     public void getAllTasks(RoutingContext ctx) {
-        dbClient.query("SELECT task_id, title, description, status, deadline, project_id, assigned_to, created_at FROM tasks ORDER BY task_id")
-            .execute()
-            .onSuccess(rows -> {
-                JsonArray tasks = new JsonArray();
-                rows.forEach(row -> tasks.add(row.toJson()));
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(tasks.encode());
-            })
+        TaskQuery query;
+        try {
+            query = TaskQuery.fromRequest(ctx.queryParams());
+        } catch (IllegalArgumentException e) {
+            Pagination.sendBadRequest(ctx, e);
+            return;
+        }
+
+        dbClient.preparedQuery(query.sql())
+            .execute(query.params())
+            .onSuccess(rows -> RowJsonWriter.send(ctx.response(),
+                Pagination.toPage(rows, query.limit(), TASK_JSON, query::cursorOf)))
             .onFailure(err -> {
-                System.err.println("Database error: " + err.getMessage());
+                log.error("list tasks failed", err);
                 ctx.fail(500, err);
             });
     }
 
+    // Full table as a streamed JSON array, for exports and "everything" views
+    public void exportTasks(RoutingContext ctx) {
+        RowStreamer.stream(dbClient, ctx,
+            "SELECT task_id, title, description, status, deadline, project_id, assigned_to, created_at FROM tasks ORDER BY task_id",
+            Tuple.tuple(), TASK_JSON);
+    }
+
     public void createTask(RoutingContext ctx) {
         JsonObject task = ctx.getBodyAsJson();
         
@@ -62,13 +100,18 @@ public class TaskController {
                     task.getInteger("project_id"),
                     task.getInteger("assigned_to")))
                 .onSuccess(rows -> {
+                    Row created = rows.iterator().next();
+                    statusCounts.increment(created.getString("status"));
+                    projectRisk.markDirty(created.getInteger("project_id"));
+                    JsonObject body = created.toJson();
+                    changeEvents.task("created", body, null, null, null);
                     ctx.response()
                         .setStatusCode(201)
                         .putHeader("Content-Type", "application/json")
-                        .end(rows.iterator().next().toJson().encode());
+                        .end(body.encode());
                 })
                 .onFailure(err -> {
-                    System.err.println("Create task error: " + err.getMessage());
+                    log.error("create task failed", err);
                     ctx.fail(500, err);
                 });
         } catch (DateTimeParseException e) {
@@ -81,19 +124,16 @@ public class TaskController {
 
     // In your DashboardController.java
 public void getTeamDashboard(RoutingContext ctx) {
-    // 1. Verify authentication (if needed)
-    String authHeader = ctx.request().getHeader("Authorization");
-    if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+    // 1. Verify authentication
+    Integer userId = SessionTokens.userId(ctx);
+    if (userId == null) {
         ctx.response().setStatusCode(401).end("Unauthorized");
         return;
     }
-
-    // 2. Extract user ID from token or request
-    String userIdParam = ctx.request().getParam("user_id");
     
     // 3. Query database for team dashboard data
     dbClient.preparedQuery(
-        "SELECT t.team_id, t.team_name, " +
+        "SELECT t.team_id, t.name AS team_name, " +
         "COUNT(DISTINCT tm.user_id) as member_count, " +
         "COUNT(DISTINCT p.project_id) as project_count " +
         "FROM teams t " +
@@ -101,7 +141,7 @@ public void getTeamDashboard(RoutingContext ctx) {
         "LEFT JOIN projects p ON t.team_id = p.team_id " +
         "WHERE tm.user_id = $1 " +  // Only teams the user belongs to
         "GROUP BY t.team_id")
-        .execute(Tuple.of(userIdParam))
+        .execute(Tuple.of(userId))
         .onSuccess(rows -> {
             JsonArray result = new JsonArray();
             rows.forEach(row -> result.add(row.toJson()));
@@ -148,12 +188,15 @@ public void getTeamDashboard(RoutingContext ctx) {
                 }
             }
     
+            // The locked sub-select hands back the pre-update values for the aggregates and change events
             dbClient.preparedQuery(
-                "UPDATE tasks SET " +
+                "UPDATE tasks t SET " +
                 "title = $1, description = $2, status = $3, " +
                 "deadline = $4, project_id = $5, assigned_to = $6 " +
-                "WHERE task_id = $7 " +
-                "RETURNING task_id, title, description, status, deadline, project_id, assigned_to, created_at")
+                "FROM (SELECT task_id, status, project_id, assigned_to FROM tasks WHERE task_id = $7 FOR UPDATE) old " +
+                "WHERE t.task_id = old.task_id " +
+                "RETURNING t.task_id, t.title, t.description, t.status, t.deadline, t.project_id, t.assigned_to, t.created_at, " +
+                "old.status AS previous_status, old.project_id AS previous_project_id, old.assigned_to AS previous_assigned_to")
                 .execute(Tuple.of(
                     task.getString("title"),
                     task.getString("description", ""),
@@ -168,9 +211,18 @@ public void getTeamDashboard(RoutingContext ctx) {
                             .setStatusCode(404)
                             .end(new JsonObject().put("error", "Task not found").encode());
                     } else {
+                        Row updated = rows.iterator().next();
+                        statusCounts.move(updated.getString("previous_status"), updated.getString("status"));
+                        projectRisk.markDirty(updated.getInteger("previous_project_id"), updated.getInteger("project_id"));
+                        JsonObject body = updated.toJson();
+                        body.remove("previous_status");
+                        body.remove("previous_project_id");
+                        body.remove("previous_assigned_to");
+                        changeEvents.task("updated", body, updated.getString("previous_status"),
+                            updated.getInteger("previous_project_id"), updated.getInteger("previous_assigned_to"));
                         ctx.response()
                             .putHeader("Content-Type", "application/json")
-                            .end(rows.iterator().next().toJson().encode());
+                            .end(body.encode());
                     }
                 })
                 .onFailure(err -> {
@@ -189,31 +241,11 @@ public void getTeamDashboard(RoutingContext ctx) {
                     .encode());
         }
   }
+  // Served from the in-memory aggregate; see StatusCounts
   public void handleTaskStatus(RoutingContext ctx) {
-    dbClient.preparedQuery("SELECT status, COUNT(*) as count FROM tasks GROUP BY status")
-        .execute()
-        .onSuccess(rows -> {
-            JsonObject result = new JsonObject();
-            for (Row row : rows) {
-                String status = row.getString("status");
-                Integer count = row.getInteger("count");
-                if (status != null && count != null) {
-                    result.put(status, count);
-                }
-            }
-            ctx.response()
-               .putHeader("Content-Type", "application/json")
-               .end(result.encode());
-        })
-        .onFailure(err -> {
-            ctx.response()
-               .setStatusCode(500)
-               .putHeader("Content-Type", "application/json")
-               .end(new JsonObject()
-                   .put("error", "Failed to fetch task status")
-                   .put("details", err.getMessage())
-                   .encode());
-        });
+    ctx.response()
+       .putHeader("Content-Type", "application/json")
+       .end(statusCounts.toJson());
 }
   public void deleteTask(RoutingContext ctx) {
     String taskIdParam = ctx.pathParam("task_id");
@@ -230,7 +262,7 @@ public void getTeamDashboard(RoutingContext ctx) {
     try {
         int taskId = Integer.parseInt(taskIdParam);
         
-        dbClient.preparedQuery("DELETE FROM tasks WHERE task_id = $1 RETURNING task_id")
+        dbClient.preparedQuery("DELETE FROM tasks WHERE task_id = $1 RETURNING task_id, status, project_id, assigned_to")
             .execute(Tuple.of(taskId))
             .onSuccess(rows -> {
                 if (rows.size() == 0) {
@@ -240,6 +272,10 @@ public void getTeamDashboard(RoutingContext ctx) {
                             .put("error", "Task not found")
                             .encode());
                 } else {
+                    Row deleted = rows.iterator().next();
+                    statusCounts.decrement(deleted.getString("status"));
+                    projectRisk.markDirty(deleted.getInteger("project_id"));
+                    changeEvents.task("deleted", deleted.toJson(), null, null, null);
                     ctx.response()
                         .setStatusCode(204) // 204 No Content is standard for successful DELETE
                         .end();
@@ -262,70 +298,57 @@ public void getTeamDashboard(RoutingContext ctx) {
     }
 }
 
-public void updateTaskStatus(RoutingContext ctx) {
-    String taskIdParam = ctx.pathParam("task_id");
-    JsonObject updateData = ctx.getBodyAsJson();
-    
-    if (taskIdParam == null || taskIdParam.isEmpty()) {
-        ctx.response()
-            .setStatusCode(400)
-            .end(new JsonObject().put("error", "Missing task_id").encode());
+// PATCH: only the fields present in the body change; see TaskPatch
+public void patchTask(RoutingContext ctx) {
+    int taskId;
+    TaskPatch patch;
+    try {
+        taskId = Integer.parseInt(ctx.pathParam("task_id"));
+        JsonObject body = ctx.body().asJsonObject();
+        if (body == null) {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+        patch = TaskPatch.from(body);
+    } catch (NumberFormatException e) {
+        Pagination.sendBadRequest(ctx, new IllegalArgumentException("task_id must be a number"));
         return;
-    }
-    
-    if (updateData == null || !updateData.containsKey("status")) {
-        ctx.response()
-            .setStatusCode(400)
-            .end(new JsonObject().put("error", "Missing status in request body").encode());
+    } catch (IllegalArgumentException | DecodeException | ClassCastException e) {
+        Pagination.sendBadRequest(ctx, e instanceof IllegalArgumentException
+            ? (IllegalArgumentException) e
+            : new IllegalArgumentException("Request body must be a JSON object"));
         return;
     }
 
-    try {
-        int taskId = Integer.parseInt(taskIdParam);
-        String newStatus = updateData.getString("status");
-        
-        // Validate status is one of allowed values
-        List<String> allowedStatuses = Arrays.asList("To Do", "In Progress", "Done", "Blocked");
-        if (!allowedStatuses.contains(newStatus)) {
-            ctx.response()
-                .setStatusCode(400)
-                .end(new JsonObject()
-                    .put("error", "Invalid status value")
-                    .put("allowed_values", allowedStatuses)
-                    .encode());
-            return;
-        }
-
-        dbClient.preparedQuery(
-            "UPDATE tasks SET status = $1 WHERE task_id = $2 " +
-            "RETURNING task_id, status")
-            .execute(Tuple.of(newStatus, taskId))
-            .onSuccess(rows -> {
-                if (rows.size() == 0) {
-                    ctx.response()
-                        .setStatusCode(404)
-                        .end(new JsonObject().put("error", "Task not found").encode());
-                } else {
-                    ctx.response()
-                        .putHeader("Content-Type", "application/json")
-                        .end(rows.iterator().next().toJson().encode());
-                }
-            })
-            .onFailure(err -> {
+    dbClient.preparedQuery(TaskPatch.sql(patch.mask()))
+        .execute(patch.tuple(taskId))
+        .onSuccess(rows -> {
+            if (rows.size() == 0) {
                 ctx.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                        .put("error", "Database error")
-                        .put("details", err.getMessage())
-                        .encode());
-            });
-    } catch (NumberFormatException e) {
-        ctx.response()
-            .setStatusCode(400)
-            .end(new JsonObject()
-                .put("error", "task_id must be a number")
-                .encode());
-    }
+                    .setStatusCode(404)
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("error", "Task not found").encode());
+                return;
+            }
+            Row updated = rows.iterator().next();
+            statusCounts.move(updated.getString("previous_status"), updated.getString("status"));
+            projectRisk.markDirty(updated.getInteger("previous_project_id"), updated.getInteger("project_id"));
+            JsonObject body = updated.toJson();
+            body.remove("previous_status");
+            body.remove("previous_project_id");
+            body.remove("previous_assigned_to");
+            changeEvents.task("updated", body, updated.getString("previous_status"),
+                updated.getInteger("previous_project_id"), updated.getInteger("previous_assigned_to"));
+            ctx.response()
+                .putHeader("Content-Type", "application/json")
+                .end(body.encode());
+        })
+        .onFailure(err -> {
+            if (TaskBatchController.sendConstraintConflict(ctx, err, "Update rejected by a database constraint")) {
+                return;
+            }
+            log.error("patch task failed", kv("task_id", taskId), err);
+            ctx.fail(500, err);
+        });
 }
 
 public void getTasksByProject(RoutingContext ctx) {
@@ -337,19 +360,7 @@ public void getTasksByProject(RoutingContext ctx) {
                    t.priority, t.deadline, t.assigned_to
             FROM tasks t
             WHERE t.project_id = $1
-            ORDER BY 
-                CASE t.status
-                    WHEN 'Not Started' THEN 1
-                    WHEN 'In Progress' THEN 2
-                    WHEN 'Completed' THEN 3
-                    ELSE 4
-                END,
-                CASE t.priority
-                    WHEN 'High' THEN 1
-                    WHEN 'Medium' THEN 2
-                    WHEN 'Low' THEN 3
-                    ELSE 4
-                END
+            ORDER BY t.status_rank, t.priority_rank, t.task_id
             """)
             .execute(Tuple.of(projectId))
             .onSuccess(rows -> {
@@ -370,6 +381,76 @@ public void getTasksByProject(RoutingContext ctx) {
     }
 }
 
+    /**
+     * Kanban board: one column per status_rank, each with its total and its first
+     * ?limit= tasks (default 50) in priority order. Every column is a LIMITed range
+     * of idx_tasks_board, so the cost follows the page size, not the project size.
+     */
+    public void getProjectBoard(RoutingContext ctx) {
+        int projectId;
+        int limit = BOARD_DEFAULT_LIMIT;
+        try {
+            projectId = Integer.parseInt(ctx.pathParam("project_id"));
+            String limitParam = ctx.request().getParam("limit");
+            if (limitParam != null && !limitParam.isEmpty()) {
+                limit = Integer.parseInt(limitParam);
+            }
+        } catch (NumberFormatException e) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("project_id and limit must be numbers"));
+            return;
+        }
+        if (limit < 0 || limit > BOARD_MAX_LIMIT) {
+            Pagination.sendBadRequest(ctx, new IllegalArgumentException("limit must be between 0 and " + BOARD_MAX_LIMIT));
+            return;
+        }
+        int perColumn = limit;
+
+        dbClient.preparedQuery("""
+            SELECT c.status_rank AS board_rank, c.total,
+                   t.task_id, t.title, t.description, t.status, t.priority, t.deadline, t.assigned_to
+            FROM (SELECT status_rank, COUNT(*) AS total FROM tasks WHERE project_id = $1 GROUP BY status_rank) c
+            LEFT JOIN LATERAL (
+                SELECT task_id, title, description, status, priority, deadline, assigned_to, priority_rank
+                FROM tasks
+                WHERE project_id = $1 AND status_rank = c.status_rank
+                ORDER BY priority_rank, task_id
+                LIMIT $2
+            ) t ON true
+            ORDER BY c.status_rank, t.priority_rank, t.task_id
+            """)
+            .execute(Tuple.of(projectId, perColumn))
+            .onSuccess(rows -> {
+                JsonObject[] columns = new JsonObject[BOARD_COLUMNS.length];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = new JsonObject()
+                        .put("status", BOARD_COLUMNS[i])
+                        .put("count", 0L)
+                        .put("tasks", new JsonArray());
+                }
+                for (Row row : rows) {
+                    JsonObject column = columns[row.getInteger("board_rank") - 1];
+                    column.put("count", row.getLong("total"));
+                    if (row.getInteger("task_id") != null) {
+                        JsonObject task = row.toJson();
+                        task.remove("board_rank");
+                        task.remove("total");
+                        column.getJsonArray("tasks").add(task);
+                    }
+                }
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject()
+                        .put("project_id", projectId)
+                        .put("limit", perColumn)
+                        .put("columns", new JsonArray(Arrays.asList((Object[]) columns)))
+                        .encode());
+            })
+            .onFailure(err -> {
+                log.error("project board failed", kv("project_id", projectId), err);
+                ctx.fail(500, err);
+            });
+    }
+
     public void handleGetTeamProjects(RoutingContext ctx) {
         try {
             String[] teamIds = ctx.request().getParam("teamIds").split(",");
@@ -402,34 +483,25 @@ public void getTasksByProject(RoutingContext ctx) {
 
     public void getUserTasks(RoutingContext ctx) {
         String username = ctx.request().getParam("username");
-        System.out.println("Received request for username: " + username);
     
-        if (username == null || username.isEmpty()) {
-            System.out.println("Username parameter missing");
+        if ((username == null || username.isEmpty()) && ctx.user() == null) {
             ctx.response().setStatusCode(400).end("Username parameter is required");
             return;
         }
     
-        System.out.println("Querying user_id for: " + username);
-        dbClient.preparedQuery("SELECT user_id FROM users WHERE full_name = $1")
-            .execute(Tuple.of(username))
-            .onSuccess(userRes -> {
-                System.out.println("User query result size: " + userRes.size());
-                
-                if (userRes.size() == 0) {
-                    System.out.println("User not found: " + username);
+        userCache.resolve(ctx, username)
+            .onSuccess(user -> {
+                if (user == null) {
+                    log.debug("user not found", kv("username", username));
                     ctx.response().setStatusCode(404).end("User not found");
                     return;
                 }
                 
-                int userId = userRes.iterator().next().getInteger("user_id");
-                System.out.println("Found user_id: " + userId + " for username: " + username);
-                
-                System.out.println("Querying tasks for user_id: " + userId);
-                dbClient.preparedQuery("SELECT * FROM tasks WHERE assigned_to = $1")
+                int userId = user.userId();
+                dbClient.preparedQuery("SELECT " + ALL_COLUMNS + " FROM tasks WHERE assigned_to = $1")
                     .execute(Tuple.of(userId))
                     .onSuccess(taskRes -> {
-                        System.out.println("Found " + taskRes.size() + " tasks");
+                        log.debug("user tasks found", kv("user_id", userId), kv("rows", taskRes.size()));
                         JsonArray tasks = new JsonArray();
                         taskRes.forEach(row -> tasks.add(row.toJson()));
                         ctx.response()
@@ -437,231 +509,16 @@ public void getTasksByProject(RoutingContext ctx) {
                             .end(tasks.encode());
                     })
                     .onFailure(err -> {
-                        System.err.println("Task query failed: " + err.getMessage());
+                        log.error("user tasks query failed", kv("user_id", userId), err);
                         ctx.response().setStatusCode(500).end("Database error");
                     });
             })
             .onFailure(err -> {
-                System.err.println("User query failed: " + err.getMessage());
+                log.error("user lookup failed", kv("username", username), err);
                 ctx.response().setStatusCode(500).end("Database error");
             });
     }
 
-    public void uploadTaskDocument(RoutingContext ctx) {
-        String taskIdParam = ctx.pathParam("task_id");
-        
-        try {
-            int taskId = Integer.parseInt(taskIdParam);
-            
-            if (ctx.fileUploads().isEmpty()) {
-                ctx.response()
-                    .setStatusCode(400)
-                    .end(new JsonObject().put("error", "No file uploaded").encode());
-                return;
-            }
-    
-            FileUpload upload = ctx.fileUploads().iterator().next();
-            String originalFilename = upload.fileName();
-            String fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            String newFilename = UUID.randomUUID() + fileExtension;
-            
-            // Use absolute path to avoid issues
-            String fullPath = "uploads/" + newFilename;
-            
-            // First ensure uploads directory exists
-            ctx.vertx().fileSystem().mkdirs("uploads", mkdirRes -> {
-                if (mkdirRes.failed()) {
-                    ctx.fail(500, mkdirRes.cause());
-                    return;
-                }
-                
-                // Now move the file
-                ctx.vertx().fileSystem().move(upload.uploadedFileName(), fullPath, moveRes -> {
-                    if (moveRes.failed()) {
-                        ctx.fail(500, moveRes.cause());
-                        return;
-                    }
-                    
-                    // Update database
-                    dbClient.preparedQuery(
-                        "UPDATE tasks SET document_path = $1 WHERE task_id = $2 RETURNING *"
-                    )
-                    .execute(Tuple.of(newFilename, taskId))
-                    .onSuccess(rows -> {
-                        if (rows.size() == 0) {
-                            ctx.response()
-                                .setStatusCode(404)
-                                .end(new JsonObject().put("error", "Task not found").encode());
-                        } else {
-                            ctx.response()
-                                .putHeader("Content-Type", "application/json")
-                                .end(rows.iterator().next().toJson().encode());
-                        }
-                    })
-                    .onFailure(err -> ctx.fail(500, err));
-                });
-            });
-        } catch (Exception e) {
-            ctx.fail(400, e);
-        }
-    }
-
-    // In your TaskController
-// TaskController.java
-// Add these methods to your TaskController
-
-public void getAllTaskDocuments(RoutingContext ctx) {
-    // Verify user is PM or Admin
-    String userRole = ctx.user().get("role");
-    if (!"pm".equals(userRole) && !"admin".equals(userRole)) {
-        ctx.response()
-           .setStatusCode(403)
-           .end(new JsonObject().put("error", "Forbidden: Only PMs and Admins can access this").encode());
-        return;
-    }
-
-    dbClient.preparedQuery("""
-        SELECT t.task_id, t.title, u.full_name as assigned_to, 
-               t.document_path, t.updated_at as last_upload
-        FROM tasks t
-        JOIN users u ON t.assigned_to = u.user_id
-        WHERE t.document_path IS NOT NULL
-        ORDER BY t.updated_at DESC
-        """)
-        .execute()
-        .onSuccess(rows -> {
-            JsonArray documents = new JsonArray();
-            rows.forEach(row -> {
-                JsonObject doc = new JsonObject()
-                    .put("task_id", row.getInteger("task_id"))
-                    .put("task_title", row.getString("title"))
-                    .put("assigned_to", row.getString("assigned_to"))
-                    .put("document_path", row.getString("document_path"))
-                    .put("last_upload", row.getLocalDateTime("last_upload").toString());
-                documents.add(doc);
-            });
-            ctx.response()
-               .putHeader("Content-Type", "application/json")
-               .end(documents.encode());
-        })
-        .onFailure(err -> {
-            ctx.fail(500, err);
-        });
-}
-
-public void getTaskDocuments(RoutingContext ctx) {
-    String taskIdParam = ctx.pathParam("task_id");
-    
-    try {
-        int taskId = Integer.parseInt(taskIdParam);
-        
-        dbClient.preparedQuery("""
-            SELECT document_path
-            FROM tasks
-            WHERE task_id = $1 AND document_path IS NOT NULL
-            """)
-            .execute(Tuple.of(taskId))
-            .onSuccess(rows -> {
-                if (rows.size() == 0) {
-                    ctx.response()
-                       .setStatusCode(404)
-                       .end(new JsonObject().put("message", "No documents found for this task").encode());
-                    return;
-                }
-                
-                Row row = rows.iterator().next();
-                JsonObject response = new JsonObject()
-                    .put("document_path", row.getString("document_path"))
-                    .put("download_url", "/api/tasks/" + taskId + "/document/download");
-                
-                ctx.response()
-                   .putHeader("Content-Type", "application/json")
-                   .end(response.encode());
-            })
-            .onFailure(err -> ctx.fail(500, err));
-    } catch (NumberFormatException e) {
-        ctx.fail(400, e);
-    }
-}
-
-public void getTaskDocumentInfo(RoutingContext ctx) {
-    String taskIdParam = ctx.pathParam("task_id");
-    
-    try {
-        int taskId = Integer.parseInt(taskIdParam);
-        
-        dbClient.preparedQuery("""
-            SELECT document_path, 
-                   LENGTH(document_path) as size,
-                   CASE 
-                       WHEN document_path LIKE '%.pdf' THEN 'application/pdf'
-                       WHEN document_path LIKE '%.doc%' THEN 'application/msword'
-                       WHEN document_path LIKE '%.xls%' THEN 'application/vnd.ms-excel'
-                       WHEN document_path LIKE '%.jpg%' THEN 'image/jpeg'
-                       WHEN document_path LIKE '%.png' THEN 'image/png'
-                       ELSE 'application/octet-stream'
-                   END as mime_type
-            FROM tasks
-            WHERE task_id = $1 AND document_path IS NOT NULL
-            """)
-            .execute(Tuple.of(taskId))
-            .onSuccess(rows -> {
-                if (rows.size() == 0) {
-                    ctx.response()
-                       .setStatusCode(200)
-                       .end(new JsonObject().put("exists", false).encode());
-                    return;
-                }
-                
-                Row row = rows.iterator().next();
-                String documentPath = row.getString("document_path");
-                String filename = documentPath.substring(documentPath.lastIndexOf("/") + 1);
-                
-                JsonObject response = new JsonObject()
-                    .put("exists", true)
-                    .put("document_path", documentPath)
-                    .put("filename", filename)
-                    .put("size", row.getLong("size"))
-                    .put("type", row.getString("mime_type"));
-                
-                ctx.response()
-                   .putHeader("Content-Type", "application/json")
-                   .end(response.encode());
-            })
-            .onFailure(err -> ctx.fail(500, err));
-    } catch (NumberFormatException e) {
-        ctx.fail(400, e);
-    }
-}
-public void downloadTaskDocument(RoutingContext ctx) {
-    String taskIdParam = ctx.pathParam("taskId");
-    
-    try {
-        int taskId = Integer.parseInt(taskIdParam);
-        
-        dbClient.preparedQuery("SELECT document_path FROM tasks WHERE task_id = $1")
-            .execute(Tuple.of(taskId))
-            .onSuccess(rows -> {
-                if (rows.size() == 0 || rows.iterator().next().getString("document_path") == null) {
-                    ctx.response()
-                       .setStatusCode(404)
-                       .end(new JsonObject().put("error", "Document not found").encode());
-                    return;
-                }
-                
-                String filePath = "uploads/" + rows.iterator().next().getString("document_path");
-                String filename = filePath.substring(filePath.lastIndexOf("/") + 1);
-                
-                ctx.response()
-                   .putHeader("Content-Type", "application/octet-stream")
-                   .putHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                   .sendFile(filePath);
-            })
-            .onFailure(err -> ctx.fail(500, err));
-    } catch (Exception e) {
-        ctx.fail(400, e);
-    }
-}
 
 public void getTaskDocumentPath(RoutingContext ctx) {
     String taskIdParam = ctx.pathParam("task_id");
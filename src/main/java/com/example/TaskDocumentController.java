@@ -0,0 +1,323 @@
+package com.example;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Task attachments: any number of documents per task, stored through {@link BlobStore}.
+ *
+ *   GET    /api/tasks/:task_id/documents                 the task's documents, newest first
+ *   POST   /api/tasks/:task_id/documents                 add one (multipart/form-data)
+ *   GET    /api/tasks/:task_id/documents/:document_id    download it (see {@link FileDownload})
+ *   DELETE /api/tasks/:task_id/documents/:document_id    remove it
+ *   GET    /api/documents                                every document, newest first (PM/admin)
+ *
+ * Name, content type, size and hash are recorded in task_documents when the file
+ * is uploaded, so listings are one index scan and never stat a file. The task's
+ * newest document is mirrored in tasks.document_path for the single-document
+ * endpoints (POST/GET /api/tasks/:task_id/document), which are served here too.
+ */
+public class TaskDocumentController {
+    private static final String COLUMNS = """
+        document_id, task_id, file_name, content_type, size, sha256, uploaded_by, uploaded_at,
+        '/api/tasks/' || task_id || '/documents/' || document_id AS download_url""";
+
+    private static final RowJsonWriter DOCUMENT_JSON = RowJsonWriter.forColumns(
+        "document_id", "task_id", "file_name", "content_type", "size", "sha256", "uploaded_by", "uploaded_at",
+        "download_url");
+
+    // Inserts nothing for a missing task
+    private static final String INSERT = """
+        INSERT INTO task_documents (task_id, storage_path, file_name, content_type, size, sha256, uploaded_by)
+        SELECT task_id, $2, $3, $4, $5, $6, $7 FROM tasks WHERE task_id = $1
+        RETURNING %s""".formatted(COLUMNS);
+
+    // Re-points the task at its newest remaining document (or none)
+    private static final String MIRROR_NEWEST = """
+        UPDATE tasks t SET (document_path, document_name) = (
+            SELECT storage_path, file_name FROM task_documents d
+            WHERE d.task_id = t.task_id
+            ORDER BY document_id DESC
+            LIMIT 1)
+        WHERE t.task_id = $1
+        RETURNING %s""".formatted(TaskController.ALL_COLUMNS);
+
+    private final PgPool dbClient;
+    private final BlobStore blobStore;
+    private final ChangeEvents changeEvents;
+
+    public TaskDocumentController(PgPool dbClient, BlobStore blobStore, ChangeEvents changeEvents) {
+        this.dbClient = dbClient;
+        this.blobStore = blobStore;
+        this.changeEvents = changeEvents;
+    }
+
+    public void listDocuments(RoutingContext ctx) {
+        Integer taskId = intParam(ctx, "task_id");
+        if (taskId == null) {
+            return;
+        }
+        dbClient.preparedQuery("SELECT " + COLUMNS + " FROM task_documents WHERE task_id = $1 ORDER BY document_id DESC")
+            .execute(Tuple.of(taskId))
+            .compose(rows -> rows.size() > 0
+                ? Future.succeededFuture(rows)
+                // Only an empty list needs telling apart from a missing task
+                : dbClient.preparedQuery("SELECT 1 FROM tasks WHERE task_id = $1").execute(Tuple.of(taskId))
+                    .map(task -> task.size() == 0 ? null : rows))
+            .onSuccess(rows -> {
+                if (rows == null) {
+                    sendError(ctx, 404, "Task not found");
+                    return;
+                }
+                ByteBuf out = RowJsonWriter.allocate(64 + rows.size() * 256);
+                DOCUMENT_JSON.writeArray(rows, rows.size(), out);
+                RowJsonWriter.send(ctx.response(), out);
+            })
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    public void addDocument(RoutingContext ctx) {
+        upload(ctx, (result, deduplicated) -> {
+            JsonObject document = result.getJsonObject("document").put("deduplicated", deduplicated);
+            ctx.response()
+                .setStatusCode(201)
+                .putHeader("Content-Type", "application/json")
+                .putHeader("Location", document.getString("download_url"))
+                .end(document.encode());
+        });
+    }
+
+    /** POST /api/tasks/:task_id/document: adds a document and answers with the task, as it always has. */
+    public void uploadTaskDocument(RoutingContext ctx) {
+        upload(ctx, (result, deduplicated) -> {
+            JsonObject document = result.getJsonObject("document");
+            JsonObject task = result.getJsonObject("task").put("document", new JsonObject()
+                .put("sha256", document.getString("sha256"))
+                .put("size", document.getLong("size"))
+                .put("name", document.getString("file_name"))
+                .put("deduplicated", deduplicated));
+            ctx.response()
+                .putHeader("Content-Type", "application/json")
+                .end(task.encode());
+        });
+    }
+
+    private interface Uploaded {
+        void send(JsonObject result, boolean deduplicated);
+    }
+
+    private void upload(RoutingContext ctx, Uploaded respond) {
+        Integer taskId = intParam(ctx, "task_id");
+        if (taskId == null) {
+            return;
+        }
+        Integer uploadedBy = SessionTokens.userId(ctx);
+
+        // Hashed as it streams (no BodyHandler on these routes), then stored once per content
+        blobStore.receive(ctx)
+            .onFailure(err -> MultipartUpload.sendError(ctx, err))
+            .onSuccess(upload -> blobStore.store(upload, (conn, blobPath) -> attach(conn, taskId, upload, blobPath, uploadedBy))
+                .onSuccess(stored -> {
+                    if (stored.value == null) {
+                        sendError(ctx, 404, "Task not found");
+                        return;
+                    }
+                    JsonObject task = stored.value.getJsonObject("task");
+                    // Only document_path changed
+                    changeEvents.task("updated", task, task.getString("status"),
+                        task.getInteger("project_id"), task.getInteger("assigned_to"));
+                    respond.send(stored.value, stored.deduplicated);
+                })
+                .onFailure(err -> {
+                    blobStore.discard(upload);
+                    if (err instanceof BlobStore.Gone) {
+                        sendError(ctx, 409, err.getMessage());
+                    } else {
+                        ctx.fail(500, err);
+                    }
+                }));
+    }
+
+    /** Records the document and makes it the task's current one; null when the task does not exist. */
+    static Future<JsonObject> attach(SqlConnection conn, int taskId, MultipartUpload.Received upload,
+                                             String blobPath, Integer uploadedBy) {
+        String contentType = upload.contentType == null || upload.contentType.equals("application/octet-stream")
+            ? FileDownload.guessContentType(upload.originalName)
+            : upload.contentType;
+        return conn.preparedQuery(INSERT)
+            .execute(Tuple.of(taskId, blobPath, upload.originalName, contentType, upload.size, upload.sha256)
+                .addInteger(uploadedBy))
+            .compose(inserted -> {
+                if (inserted.size() == 0) {
+                    return Future.succeededFuture(null);
+                }
+                JsonObject document = inserted.iterator().next().toJson();
+                return conn.preparedQuery(
+                        "UPDATE tasks SET document_path = $1, document_name = $2 WHERE task_id = $3 RETURNING "
+                            + TaskController.ALL_COLUMNS)
+                    .execute(Tuple.of(blobPath, upload.originalName, taskId))
+                    .map(tasks -> new JsonObject()
+                        .put("document", document)
+                        .put("task", tasks.iterator().next().toJson()));
+            });
+    }
+
+    public void downloadDocument(RoutingContext ctx) {
+        Integer taskId = intParam(ctx, "task_id");
+        Integer documentId = taskId == null ? null : intParam(ctx, "document_id");
+        if (documentId == null) {
+            return;
+        }
+        dbClient.preparedQuery("""
+                SELECT storage_path, file_name, content_type, sha256
+                FROM task_documents WHERE document_id = $1 AND task_id = $2""")
+            .execute(Tuple.of(documentId, taskId))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    sendError(ctx, 404, "Document not found");
+                    return;
+                }
+                Row row = rows.iterator().next();
+                String sha256 = row.getString("sha256");
+                FileDownload.send(ctx, BlobStore.ROOT + "/" + row.getString("storage_path"), row.getString("file_name"),
+                    row.getString("content_type"), sha256 == null ? null : "\"" + sha256 + "\"");
+            })
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    /** GET /api/tasks/:taskId/document(/download): the task's current document. */
+    public void downloadTaskDocument(RoutingContext ctx) {
+        Integer taskId = intParam(ctx, "taskId");
+        if (taskId == null) {
+            return;
+        }
+        dbClient.preparedQuery("SELECT document_path, document_name FROM tasks WHERE task_id = $1")
+            .execute(Tuple.of(taskId))
+            .onSuccess(rows -> {
+                if (rows.size() == 0 || rows.iterator().next().getString("document_path") == null) {
+                    sendError(ctx, 404, "Document not found");
+                    return;
+                }
+                Row row = rows.iterator().next();
+                String documentPath = row.getString("document_path");
+                String filePath = BlobStore.ROOT + "/" + documentPath;
+                // Blobs are stored under their hash; older uploads under a generated name
+                String filename = row.getString("document_name") != null
+                    ? row.getString("document_name")
+                    : filePath.substring(filePath.lastIndexOf("/") + 1);
+                // A blob's hash is its content; older files get a size/mtime tag
+                String etag = BlobStore.isBlob(documentPath)
+                    ? "\"" + documentPath.substring(documentPath.lastIndexOf('/') + 1) + "\""
+                    : null;
+
+                FileDownload.send(ctx, filePath, filename, null, etag);
+            })
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    /** GET /api/tasks/:task_id/document/info: metadata of the task's current document, as recorded at upload. */
+    public void getTaskDocumentInfo(RoutingContext ctx) {
+        Integer taskId = intParam(ctx, "task_id");
+        if (taskId == null) {
+            return;
+        }
+        dbClient.preparedQuery("""
+                SELECT storage_path, file_name, content_type, size
+                FROM task_documents WHERE task_id = $1
+                ORDER BY document_id DESC
+                LIMIT 1""")
+            .execute(Tuple.of(taskId))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    ctx.response()
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("exists", false).encode());
+                    return;
+                }
+                Row row = rows.iterator().next();
+                String contentType = row.getString("content_type");
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject()
+                        .put("exists", true)
+                        .put("document_path", row.getString("storage_path"))
+                        .put("filename", row.getString("file_name"))
+                        .put("size", row.getLong("size"))
+                        .put("type", contentType != null ? contentType : FileDownload.guessContentType(row.getString("file_name")))
+                        .encode());
+            })
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    public void removeDocument(RoutingContext ctx) {
+        Integer taskId = intParam(ctx, "task_id");
+        Integer documentId = taskId == null ? null : intParam(ctx, "document_id");
+        if (documentId == null) {
+            return;
+        }
+        // The blob's reference goes with the row (trigger); the file with the next collection
+        dbClient.withTransaction(conn -> conn.preparedQuery(
+                    "DELETE FROM task_documents WHERE document_id = $1 AND task_id = $2")
+                .execute(Tuple.of(documentId, taskId))
+                .compose(deleted -> deleted.rowCount() == 0
+                    ? Future.<JsonObject>succeededFuture(null)
+                    : conn.preparedQuery(MIRROR_NEWEST).execute(Tuple.of(taskId))
+                        .map(tasks -> tasks.iterator().next().toJson())))
+            .onSuccess(task -> {
+                if (task == null) {
+                    sendError(ctx, 404, "Document not found");
+                    return;
+                }
+                changeEvents.task("updated", task, task.getString("status"),
+                    task.getInteger("project_id"), task.getInteger("assigned_to"));
+                ctx.response().setStatusCode(204).end();
+            })
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    /** GET /api/documents?limit=&after=: every task's documents, newest first; after is a document_id. */
+    public void listAllDocuments(RoutingContext ctx) {
+        String role = SessionTokens.role(ctx);
+        if (!"pm".equals(role) && !"admin".equals(role)) {
+            sendError(ctx, 403, "Forbidden: Only PMs and Admins can access this");
+            return;
+        }
+        Pagination page;
+        try {
+            page = Pagination.fromRequest(ctx);
+        } catch (IllegalArgumentException e) {
+            Pagination.sendBadRequest(ctx, e);
+            return;
+        }
+        // Descending keyset: after is the last document_id already seen
+        int before = page.after() == Integer.MIN_VALUE ? Integer.MAX_VALUE : page.after();
+        dbClient.preparedQuery("SELECT " + COLUMNS
+                + " FROM task_documents WHERE document_id < $1 ORDER BY document_id DESC LIMIT $2")
+            .execute(Tuple.of(before, page.fetchSize()))
+            .onSuccess(rows -> RowJsonWriter.send(ctx.response(), Pagination.toPage(rows, page.limit(), DOCUMENT_JSON,
+                row -> String.valueOf(row.getInteger("document_id")))))
+            .onFailure(err -> ctx.fail(500, err));
+    }
+
+    private static Integer intParam(RoutingContext ctx, String name) {
+        try {
+            return Integer.parseInt(ctx.pathParam(name));
+        } catch (NumberFormatException e) {
+            sendError(ctx, 400, name + " must be a number");
+            return null;
+        }
+    }
+
+    private static void sendError(RoutingContext ctx, int status, String message) {
+        ctx.response()
+            .setStatusCode(status)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("error", message).encode());
+    }
+}
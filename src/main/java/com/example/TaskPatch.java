@@ -0,0 +1,158 @@
+package com.example;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * A partial task update: the subset of writable fields present in a JSON body.
+ *
+ * Fields absent from the body are left untouched; a field sent as null is set to
+ * NULL (except title, which the table requires). The set of fields present is a
+ * bit mask, and the UPDATE statement depends only on that mask, so every patch
+ * touching the same fields shares one SQL text.
+ */
+public class TaskPatch {
+    enum Field {
+        TITLE("title"), DESCRIPTION("description"), STATUS("status"), PRIORITY("priority"),
+        DEADLINE("deadline"), PROJECT_ID("project_id"), ASSIGNED_TO("assigned_to");
+
+        final String column;
+
+        Field(String column) {
+            this.column = column;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    // One SQL string per mask, built on first use; every caller then passes the identical
+    // String, which is also the key of the connections' prepared statement cache
+    private static final String[] SQL_BY_MASK = new String[1 << FIELDS.length];
+
+    // Same columns as TaskController.ALL_COLUMNS, qualified: "old" shares some column names
+    static final String RETURNING = "t.task_id, t.title, t.description, t.status, t.priority, t.deadline, "
+        + "t.project_id, t.assigned_to, t.document_path, t.created_at, t.updated_at";
+
+    private final int mask;
+    private final Object[] values;
+
+    private TaskPatch(int mask, Object[] values) {
+        this.mask = mask;
+        this.values = values;
+    }
+
+    /**
+     * Reads the writable fields present in {@code body}; unknown keys are ignored.
+     *
+     * @throws IllegalArgumentException naming the first invalid field, or if no field is present
+     */
+    public static TaskPatch from(JsonObject body) {
+        int mask = 0;
+        Object[] values = new Object[FIELDS.length];
+        for (Field field : FIELDS) {
+            if (!body.containsKey(field.column)) {
+                continue;
+            }
+            mask |= 1 << field.ordinal();
+            values[field.ordinal()] = parse(field, body.getValue(field.column));
+        }
+        if (mask == 0) {
+            throw new IllegalArgumentException("No updatable field in request body");
+        }
+        return new TaskPatch(mask, values);
+    }
+
+    private static Object parse(Field field, Object value) {
+        try {
+            switch (field) {
+                case TITLE:
+                    if (value == null || ((String) value).isBlank()) {
+                        throw new IllegalArgumentException("title must not be empty");
+                    }
+                    return value;
+                case DESCRIPTION:
+                case STATUS:
+                case PRIORITY:
+                    return (String) value;
+                case DEADLINE:
+                    return value == null ? null : LocalDate.parse((String) value);
+                default:
+                    return value == null ? null : integer(field, (Number) value);
+            }
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException(field.column + " has the wrong type");
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid deadline format. Expected YYYY-MM-DD");
+        }
+    }
+
+    // Whole numbers only: 1.9 or 2^31 must not quietly become 1 or a negative id
+    private static Integer integer(Field field, Number value) {
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        double d = value.doubleValue();
+        if (d == Math.rint(d) && d >= Integer.MIN_VALUE && d <= Integer.MAX_VALUE) {
+            return value.intValue();
+        }
+        throw new IllegalArgumentException(field.column + " has the wrong type");
+    }
+
+    /** Identifies the SQL text: patches with equal masks share {@link #sql}. */
+    public int mask() {
+        return mask;
+    }
+
+    public boolean touches(Field field) {
+        return (mask & (1 << field.ordinal())) != 0;
+    }
+
+    /**
+     * UPDATE for the fields in {@code mask}, with $1 the task_id. The locked sub-select
+     * returns the pre-update status, project and assignee as previous_status,
+     * previous_project_id and previous_assigned_to, for the aggregates and change events.
+     */
+    static String sql(int mask) {
+        String sql = SQL_BY_MASK[mask];
+        if (sql == null) {
+            // Racing builders produce equal strings; either may win
+            sql = buildSql(mask);
+            SQL_BY_MASK[mask] = sql;
+        }
+        return sql;
+    }
+
+    private static String buildSql(int mask) {
+        StringBuilder sql = new StringBuilder("UPDATE tasks t SET ");
+        int param = 2;
+        for (Field field : FIELDS) {
+            if ((mask & (1 << field.ordinal())) != 0) {
+                if (param > 2) {
+                    sql.append(", ");
+                }
+                sql.append(field.column).append(" = $").append(param++);
+            }
+        }
+        return sql.append(", updated_at = now()")
+            .append(" FROM (SELECT task_id, status, project_id, assigned_to FROM tasks WHERE task_id = $1 FOR UPDATE) old")
+            .append(" WHERE t.task_id = old.task_id")
+            .append(" RETURNING ").append(RETURNING)
+            .append(", old.status AS previous_status, old.project_id AS previous_project_id")
+            .append(", old.assigned_to AS previous_assigned_to")
+            .toString();
+    }
+
+    /** Parameters for {@link #sql}: the task_id, then the present fields in declaration order. */
+    public Tuple tuple(int taskId) {
+        Tuple tuple = Tuple.of(taskId);
+        for (Field field : FIELDS) {
+            if (touches(field)) {
+                tuple.addValue(values[field.ordinal()]);
+            }
+        }
+        return tuple;
+    }
+}
@@ -0,0 +1,308 @@
+package com.example;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * GET /api/tasks filters and sort order, compiled into one parameterized query.
+ *
+ * Supported parameters: status, assigned_to and project_id (each a single value or
+ * a comma-separated list), deadline_from/deadline_to and created_from/created_to
+ * (inclusive YYYY-MM-DD dates), sort (task_id, deadline or created_at, "-" prefix
+ * for descending) plus the usual limit/after. Only whitelisted column names ever
+ * reach the SQL text; every value is a bind parameter.
+ *
+ * Pages are keyset-paginated on (sort column, task_id). NULLs sort last ascending
+ * and first descending, which is the order a plain btree index returns them in,
+ * so each (column, task_id) index from V2__task_list_indexes.sql serves the sort directly.
+ * The next_cursor is opaque (base64 of the sort, last value and last task_id); a
+ * bare integer is still accepted for the default sort so existing clients keep paging.
+ */
+public class TaskQuery {
+    static final String COLUMNS = "task_id, title, description, status, deadline, project_id, assigned_to, created_at";
+    private static final int MAX_LIST_VALUES = 50;
+
+    enum SortColumn {
+        TASK_ID("task_id"), DEADLINE("deadline"), CREATED_AT("created_at");
+
+        final String column;
+
+        SortColumn(String column) {
+            this.column = column;
+        }
+
+        static SortColumn of(String name) {
+            for (SortColumn sort : values()) {
+                if (sort.column.equals(name)) {
+                    return sort;
+                }
+            }
+            throw new IllegalArgumentException("sort must be one of task_id, deadline, created_at (prefix - for descending)");
+        }
+    }
+
+    private final String sql;
+    private final Tuple params;
+    private final int limit;
+    private final SortColumn sort;
+    private final boolean descending;
+
+    private TaskQuery(String sql, Tuple params, int limit, SortColumn sort, boolean descending) {
+        this.sql = sql;
+        this.params = params;
+        this.limit = limit;
+        this.sort = sort;
+        this.descending = descending;
+    }
+
+    /**
+     * Parses and validates the query string.
+     *
+     * @throws IllegalArgumentException naming the offending parameter
+     */
+    public static TaskQuery fromRequest(MultiMap query) {
+        int limit = parseLimit(query.get("limit"));
+
+        String sortParam = query.get("sort");
+        boolean descending = sortParam != null && sortParam.startsWith("-");
+        SortColumn sort = sortParam == null || sortParam.isEmpty()
+            ? SortColumn.TASK_ID
+            : SortColumn.of(descending ? sortParam.substring(1) : sortParam);
+
+        Tuple params = Tuple.tuple();
+        List<String> where = new ArrayList<>();
+
+        String[] statuses = parseList(query.get("status"), "status");
+        if (statuses != null) {
+            params.addArrayOfString(statuses);
+            where.add("status = ANY($" + params.size() + ")");
+        }
+        Integer[] assignees = parseIntList(query.get("assigned_to"), "assigned_to");
+        if (assignees != null) {
+            params.addArrayOfInteger(assignees);
+            where.add("assigned_to = ANY($" + params.size() + ")");
+        }
+        Integer[] projects = parseIntList(query.get("project_id"), "project_id");
+        if (projects != null) {
+            params.addArrayOfInteger(projects);
+            where.add("project_id = ANY($" + params.size() + ")");
+        }
+        LocalDate deadlineFrom = parseDate(query.get("deadline_from"), "deadline_from");
+        if (deadlineFrom != null) {
+            params.addLocalDate(deadlineFrom);
+            where.add("deadline >= $" + params.size());
+        }
+        LocalDate deadlineTo = parseDate(query.get("deadline_to"), "deadline_to");
+        if (deadlineTo != null) {
+            params.addLocalDate(deadlineTo);
+            where.add("deadline <= $" + params.size());
+        }
+        LocalDate createdFrom = parseDate(query.get("created_from"), "created_from");
+        if (createdFrom != null) {
+            params.addLocalDateTime(createdFrom.atStartOfDay());
+            where.add("created_at >= $" + params.size());
+        }
+        LocalDate createdTo = parseDate(query.get("created_to"), "created_to");
+        if (createdTo != null) {
+            params.addLocalDateTime(createdTo.plusDays(1).atStartOfDay());
+            where.add("created_at < $" + params.size());
+        }
+
+        List<String> branches = keyset(query.get("after"), sort, descending, params);
+
+        params.addInteger(limit + 1);
+        String limitParam = "$" + params.size();
+        String order = sort == SortColumn.TASK_ID
+            ? "task_id" + (descending ? " DESC" : "")
+            : sort.column + (descending ? " DESC, task_id DESC" : ", task_id");
+
+        String sql;
+        if (branches.size() <= 1) {
+            sql = select(where, branches.isEmpty() ? null : branches.get(0), order, limitParam);
+        } else {
+            // The page straddles the NULL boundary: each branch is an index range, merged here
+            sql = "SELECT " + COLUMNS + " FROM ((" + select(where, branches.get(0), order, limitParam) + ") UNION ALL ("
+                + select(where, branches.get(1), order, limitParam) + ")) page ORDER BY " + order + " LIMIT " + limitParam;
+        }
+        return new TaskQuery(sql, params, limit, sort, descending);
+    }
+
+    private static String select(List<String> where, String keyset, String order, String limitParam) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM tasks");
+        List<String> conditions = new ArrayList<>(where);
+        if (keyset != null) {
+            conditions.add(keyset);
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return sql.append(" ORDER BY ").append(order).append(" LIMIT ").append(limitParam).toString();
+    }
+
+    /**
+     * Conditions selecting the rows after the cursor, as alternative branches.
+     * Row comparisons keep each branch a single index range; NULLs need their own branch.
+     */
+    private static List<String> keyset(String after, SortColumn sort, boolean descending, Tuple params) {
+        if (after == null || after.isEmpty()) {
+            return List.of();
+        }
+        String op = descending ? "<" : ">";
+        if (sort == SortColumn.TASK_ID) {
+            params.addInteger(cursorTaskId(after, descending));
+            return List.of("task_id " + op + " $" + params.size());
+        }
+
+        JsonArray cursor = decodeCursor(after);
+        if (!sort.column.equals(cursor.getValue(0)) || !Boolean.valueOf(descending).equals(cursor.getValue(1))) {
+            throw new IllegalArgumentException("Cursor does not belong to this sort order");
+        }
+        String value;
+        try {
+            value = cursor.getString(2);
+            if (value != null) {
+                // Validate before any parameter is bound
+                if (sort == SortColumn.DEADLINE) {
+                    LocalDate.parse(value);
+                } else {
+                    LocalDateTime.parse(value);
+                }
+            }
+        } catch (ClassCastException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid after cursor");
+        }
+        params.addInteger(cursor.getInteger(3));
+        String taskId = "$" + params.size();
+        String column = sort.column;
+
+        if (value == null) {
+            String nulls = column + " IS NULL AND task_id " + op + " " + taskId;
+            // Descending returns NULLs first: every non-NULL row is still ahead
+            return descending ? List.of(nulls, column + " IS NOT NULL") : List.of(nulls);
+        }
+        if (sort == SortColumn.DEADLINE) {
+            params.addLocalDate(LocalDate.parse(value));
+        } else {
+            params.addLocalDateTime(LocalDateTime.parse(value));
+        }
+        String range = "(" + column + ", task_id) " + op + " ($" + params.size() + ", " + taskId + ")";
+        // Ascending returns NULLs last: they all follow any non-NULL cursor
+        return descending ? List.of(range) : List.of(range, column + " IS NULL");
+    }
+
+    private static int cursorTaskId(String after, boolean descending) {
+        try {
+            return Integer.parseInt(after);
+        } catch (NumberFormatException e) {
+            // not a legacy cursor
+        }
+        JsonArray cursor = decodeCursor(after);
+        if (!SortColumn.TASK_ID.column.equals(cursor.getValue(0)) || !Boolean.valueOf(descending).equals(cursor.getValue(1))) {
+            throw new IllegalArgumentException("Cursor does not belong to this sort order");
+        }
+        return cursor.getInteger(3);
+    }
+
+    private static JsonArray decodeCursor(String after) {
+        try {
+            JsonArray cursor = new JsonArray(new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8));
+            if (cursor.size() != 4 || cursor.getInteger(3) == null) {
+                throw new IllegalArgumentException("Invalid after cursor");
+            }
+            return cursor;
+        } catch (DecodeException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid after cursor");
+        }
+    }
+
+    /** Opaque next_cursor for the last row on a page. */
+    String cursorOf(Row row) {
+        Object value = sort == SortColumn.TASK_ID ? null : row.getValue(sort.column);
+        JsonArray cursor = new JsonArray()
+            .add(sort.column)
+            .add(descending)
+            .add(value == null ? null : value.toString())
+            .add(row.getInteger("task_id"));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.encode().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    public Tuple params() {
+        return params;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    private static int parseLimit(String param) {
+        if (param == null || param.isEmpty()) {
+            return Pagination.DEFAULT_LIMIT;
+        }
+        int limit;
+        try {
+            limit = Integer.parseInt(param);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number");
+        }
+        if (limit < 1 || limit > Pagination.MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + Pagination.MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    private static String[] parseList(String param, String name) {
+        if (param == null || param.isEmpty()) {
+            return null;
+        }
+        String[] values = param.split(",");
+        if (values.length > MAX_LIST_VALUES) {
+            throw new IllegalArgumentException(name + " accepts at most " + MAX_LIST_VALUES + " values");
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].trim();
+        }
+        return values;
+    }
+
+    private static Integer[] parseIntList(String param, String name) {
+        String[] values = parseList(param, name);
+        if (values == null) {
+            return null;
+        }
+        Integer[] ids = new Integer[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                ids[i] = Integer.valueOf(values[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number or a comma-separated list of numbers");
+        }
+        return ids;
+    }
+
+    private static LocalDate parseDate(String param, String name) {
+        if (param == null || param.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(param);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be a date (YYYY-MM-DD)");
+        }
+    }
+}
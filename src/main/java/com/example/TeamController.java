@@ -2,108 +2,114 @@ package com.example;
 
 import java.util.Arrays;
 
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.Tuple;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
 public class TeamController {
+    private static final Logger log = LoggerFactory.getLogger(TeamController.class);
+
+    // Must match the SELECT list of getAllTeams/exportTeams
+    private static final RowJsonWriter TEAM_JSON = RowJsonWriter.forColumns(
+        "team_id", "name", "description", "project_id", "created_at");
+
     private final PgPool dbClient;
+    private final UserCache userCache;
+    private final ChangeEvents changeEvents;
 
-    public TeamController(PgPool dbClient) {
+    public TeamController(PgPool dbClient, UserCache userCache, ChangeEvents changeEvents) {
         this.dbClient = dbClient;
+        this.userCache = userCache;
+        this.changeEvents = changeEvents;
     }
 
     public void getTeamProjects(RoutingContext ctx) {
-        // 1. Enable detailed request logging
-        System.out.println("\n=== NEW REQUEST ===");
-        System.out.println("Method: " + ctx.request().method());
-        System.out.println("Path: " + ctx.request().path());
-        System.out.println("Full URI: " + ctx.request().absoluteURI());
-        System.out.println("Query Params: " + ctx.request().params().entries());
-    
         try {
-            // 2. Validate and parse parameters
+            // 1. Validate and parse parameters
             String teamIdsParam = ctx.request().getParam("teamIds");
-            System.out.println("Raw teamIds: '" + teamIdsParam + "'");
+            log.debug("team projects requested", kv("team_ids", teamIdsParam));
     
             if (teamIdsParam == null || teamIdsParam.isEmpty()) {
-                System.err.println("ERROR: Missing teamIds parameter");
                 sendError(ctx, 400, "Missing teamIds parameter");
                 return;
             }
     
-            // 3. Convert to PostgreSQL compatible array
+            // 2. Convert to PostgreSQL compatible array
             Integer[] teamIds = Arrays.stream(teamIdsParam.split(","))
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .map(Integer::valueOf)
                 .toArray(Integer[]::new);
     
-            System.out.println("Parsed teamIds: " + Arrays.toString(teamIds));
-    
-            // 4. Debug the SQL query
+            // 3. Query
             String sql = """
                 SELECT t.team_id, p.name as project_name
                 FROM teams t
                 LEFT JOIN projects p ON t.project_id = p.project_id
                 WHERE t.team_id = ANY($1)
                 """;
-            System.out.println("Executing SQL:\n" + sql);
-            System.out.println("With parameters: " + Arrays.toString(teamIds));
-    
-            // 5. Execute query with enhanced logging
             dbClient.preparedQuery(sql)
                 .execute(Tuple.of(teamIds))
                 .onSuccess(rows -> {
-                    System.out.println("Query succeeded. Found " + rows.size() + " rows");
-                    
                     JsonArray result = new JsonArray();
                     rows.forEach(row -> {
                         JsonObject item = new JsonObject()
                             .put("team_id", row.getInteger("team_id"))
                             .put("project", row.getString("project_name"));
                         result.add(item);
-                        
-                        // Debug each row
-                        System.out.println("Row: " + item.encode());
                     });
-    
-                    System.out.println("Final response: " + result.encode());
+                    log.debug("team projects found", kv("team_ids", teamIdsParam), kv("rows", rows.size()));
                     ctx.response()
                         .putHeader("Content-Type", "application/json")
                         .end(result.encode());
                 })
                 .onFailure(err -> {
-                    System.err.println("DATABASE ERROR: " + err.getMessage());
-                    err.printStackTrace();
+                    log.error("team projects query failed", kv("team_ids", teamIdsParam), err);
                     sendError(ctx, 500, "Database error: " + err.getMessage());
                 });
     
         } catch (Exception e) {
-            System.err.println("UNEXPECTED ERROR: " + e.getMessage());
-            e.printStackTrace();
+            log.error("team projects failed", e);
             sendError(ctx, 500, "Internal server error");
         }
     }
 
     public void getAllTeams(RoutingContext ctx) {
-        dbClient.query("SELECT team_id, name, description, project_id, created_at FROM teams ORDER BY team_id")
-            .execute()
-            .onSuccess(rows -> {
-                JsonArray teams = new JsonArray();
-                rows.forEach(row -> teams.add(row.toJson()));
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(teams.encode());
-            })
+        Pagination page;
+        try {
+            page = Pagination.fromRequest(ctx);
+        } catch (IllegalArgumentException e) {
+            Pagination.sendBadRequest(ctx, e);
+            return;
+        }
+
+        dbClient.preparedQuery(
+            "SELECT team_id, name, description, project_id, created_at FROM teams " +
+            "WHERE team_id > $1 ORDER BY team_id LIMIT $2")
+            .execute(Tuple.of(page.after(), page.fetchSize()))
+            .onSuccess(rows -> RowJsonWriter.send(ctx.response(), page.toPage(rows, "team_id", TEAM_JSON)))
             .onFailure(err -> {
-                System.err.println("Database error: " + err.getMessage());
+                log.error("team query failed", err);
                 ctx.fail(500, err);
             });
     }
 
+    public void exportTeams(RoutingContext ctx) {
+        RowStreamer.stream(dbClient, ctx,
+            "SELECT team_id, name, description, project_id, created_at FROM teams ORDER BY team_id",
+            Tuple.tuple(), TEAM_JSON);
+    }
+
     public void createTeam(RoutingContext ctx) {
         JsonObject team = ctx.getBodyAsJson();
         
@@ -127,13 +133,15 @@ public class TeamController {
                 team.getString("description", ""),
                 projectId))  // Use the nullable projectId
             .onSuccess(rows -> {
+                JsonObject created = rows.iterator().next().toJson();
+                changeEvents.team("created", created);
                 ctx.response()
                     .setStatusCode(201)
                     .putHeader("Content-Type", "application/json")
-                    .end(rows.iterator().next().toJson().encode());
+                    .end(created.encode());
             })
             .onFailure(err -> {
-                System.err.println("Create team error: " + err.getMessage());
+                log.error("create team failed", err);
                 ctx.fail(500, err);
             });
     }
@@ -168,9 +176,11 @@ public class TeamController {
                             .setStatusCode(404)
                             .end(new JsonObject().put("error", "Team not found").encode());
                     } else {
+                        JsonObject updated = rows.iterator().next().toJson();
+                        changeEvents.team("updated", updated);
                         ctx.response()
                             .putHeader("Content-Type", "application/json")
-                            .end(rows.iterator().next().toJson().encode());
+                            .end(updated.encode());
                     }
                 })
                 .onFailure(err -> {
@@ -205,7 +215,7 @@ public class TeamController {
         try {
             int teamId = Integer.parseInt(teamIdParam);
             
-            dbClient.preparedQuery("DELETE FROM teams WHERE team_id = $1 RETURNING team_id")
+            dbClient.preparedQuery("DELETE FROM teams WHERE team_id = $1 RETURNING team_id, project_id")
                 .execute(Tuple.of(teamId))
                 .onSuccess(rows -> {
                     if (rows.size() == 0) {
@@ -215,6 +225,7 @@ public class TeamController {
                                 .put("error", "Team not found")
                                 .encode());
                     } else {
+                        changeEvents.team("deleted", rows.iterator().next().toJson());
                         ctx.response()
                             .setStatusCode(204)
                             .end();
@@ -238,12 +249,11 @@ public class TeamController {
     }
 
     public void getTeamDashboard(RoutingContext ctx) {
-        // Get user from session
-        JsonObject user = ctx.session().get("user");
-        Integer userId = user.getInteger("user_id");
+        // Identity comes from the verified session token (requireUser runs first)
+        Integer userId = SessionTokens.userId(ctx);
         
         dbClient.preparedQuery(
-            "SELECT t.team_id, t.team_name, " +
+            "SELECT t.team_id, t.name AS team_name, " +
             "COUNT(DISTINCT tm.user_id) as member_count, " +
             "COUNT(DISTINCT p.project_id) as project_count " +
             "FROM teams t " +
@@ -288,13 +298,15 @@ public class TeamController {
                     member.getInteger("user_id"),
                     member.getString("role", "Member")))
                 .onSuccess(rows -> {
+                    Row added = rows.iterator().next();
+                    changeEvents.teamMembers("added", teamId, new JsonArray().add(added.getInteger("user_id")));
                     ctx.response()
                         .setStatusCode(201)
                         .putHeader("Content-Type", "application/json")
-                        .end(rows.iterator().next().toJson().encode());
+                        .end(added.toJson().encode());
                 })
                 .onFailure(err -> {
-                    System.err.println("Add member error: " + err.getMessage());
+                    log.error("add team member failed", err);
                     ctx.fail(500, err);
                 });
         } catch (NumberFormatException e) {
@@ -302,6 +314,191 @@ public class TeamController {
         }
     }
 
+    /**
+     * POST /api/teams/:team_id/members: a JSON object adds one member (as before); a
+     * JSON array of {"user_id", "role"} adds them all in one statement. Users that
+     * are already members keep their role, unknown user_ids are skipped.
+     */
+    public void addTeamMembers(RoutingContext ctx) {
+        Object body;
+        try {
+            body = Json.decodeValue(ctx.body().buffer());
+        } catch (DecodeException | NullPointerException e) {
+            body = null;
+        }
+        if (!(body instanceof JsonArray)) {
+            addTeamMember(ctx);
+            return;
+        }
+        bulkMembers(ctx, (JsonArray) body, "added", BULK_ADD, Roles.OPTIONAL);
+    }
+
+    /** PUT /api/teams/:team_id/members: array of {"user_id", "role"}; users not in the team are skipped. */
+    public void updateTeamMemberRoles(RoutingContext ctx) {
+        bulkMembers(ctx, bodyArray(ctx), "updated", BULK_UPDATE_ROLES, Roles.REQUIRED);
+    }
+
+    /** DELETE /api/teams/:team_id/members: array of user_ids (or {"user_id"} objects). */
+    public void removeTeamMembers(RoutingContext ctx) {
+        bulkMembers(ctx, bodyArray(ctx), "removed", BULK_REMOVE, Roles.IGNORED);
+    }
+
+    // Bulk membership changes: $1 team_id, $2 user_ids, $3 roles (parallel arrays, unnested
+    // together). Each statement also returns the resulting membership, tagging the rows it
+    // touched in "change"; a CTE's writes are invisible to the rest of its statement, so the
+    // result is assembled from the old rows plus the CTE's RETURNING.
+    private static final String BULK_ADD = """
+        WITH requested AS (
+            -- A user_id listed twice keeps its first role
+            SELECT DISTINCT ON (m.user_id) m.user_id, COALESCE(m.role, 'Member') AS role
+            FROM unnest($2::int[], $3::text[]) WITH ORDINALITY AS m(user_id, role, position)
+            ORDER BY m.user_id, m.position
+        ), changed AS (
+            INSERT INTO team_members (team_id, user_id, role)
+            SELECT $1, r.user_id, r.role
+            FROM requested r
+            JOIN teams t ON t.team_id = $1
+            JOIN users u ON u.user_id = r.user_id
+            ON CONFLICT (team_id, user_id) DO NOTHING
+            RETURNING user_id, role
+        ), rows AS (
+            SELECT user_id, role, NULL AS change FROM team_members WHERE team_id = $1
+            UNION ALL
+            SELECT user_id, role, 'added' FROM changed
+        )""";
+
+    private static final String BULK_UPDATE_ROLES = """
+        WITH changed AS (
+            UPDATE team_members tm SET role = m.role
+            FROM unnest($2::int[], $3::text[]) AS m(user_id, role)
+            WHERE tm.team_id = $1 AND tm.user_id = m.user_id
+            RETURNING tm.user_id, tm.role
+        ), rows AS (
+            SELECT tm.user_id, COALESCE(c.role, tm.role) AS role,
+                   CASE WHEN c.user_id IS NOT NULL THEN 'updated' END AS change
+            FROM team_members tm
+            LEFT JOIN changed c ON c.user_id = tm.user_id
+            WHERE tm.team_id = $1
+        )""";
+
+    private static final String BULK_REMOVE = """
+        WITH changed AS (
+            DELETE FROM team_members
+            WHERE team_id = $1 AND user_id IN (SELECT unnest($2::int[]))
+            RETURNING user_id, role
+        ), rows AS (
+            SELECT tm.user_id, tm.role, CASE WHEN c.user_id IS NOT NULL THEN 'removed' END AS change
+            FROM team_members tm
+            LEFT JOIN changed c ON c.user_id = tm.user_id
+            WHERE tm.team_id = $1
+        )""";
+
+    // No row at all: the team does not exist. One all-NULL row: an existing team with no members.
+    private static final String BULK_RESULT = """
+        SELECT m.user_id, u.full_name, u.email, m.role, m.change
+        FROM (SELECT team_id FROM teams WHERE team_id = $1) t
+        LEFT JOIN rows m ON true
+        LEFT JOIN users u ON u.user_id = m.user_id
+        ORDER BY m.role, u.full_name""";
+
+    private static final int MAX_BULK_MEMBERS = 1000;
+
+    // Whether a bulk statement takes the $3 roles array, and whether every item must supply one
+    private enum Roles { IGNORED, OPTIONAL, REQUIRED }
+
+    private static JsonArray bodyArray(RoutingContext ctx) {
+        try {
+            return ctx.body().asJsonArray();
+        } catch (DecodeException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    private void bulkMembers(RoutingContext ctx, JsonArray items, String change, String cte, Roles roleMode) {
+        int teamId;
+        try {
+            teamId = Integer.parseInt(ctx.pathParam("team_id"));
+        } catch (NumberFormatException e) {
+            sendError(ctx, 400, "team_id must be a number");
+            return;
+        }
+        if (items == null || items.isEmpty() || items.size() > MAX_BULK_MEMBERS) {
+            sendError(ctx, 400, "Body must be a JSON array of 1 to " + MAX_BULK_MEMBERS + " members");
+            return;
+        }
+
+        Integer[] userIds = new Integer[items.size()];
+        String[] roles = new String[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Object item = items.getValue(i);
+            if (item instanceof Integer) {
+                userIds[i] = (Integer) item;
+            } else if (item instanceof JsonObject && ((JsonObject) item).getValue("user_id") instanceof Integer
+                    && (((JsonObject) item).getValue("role") == null || ((JsonObject) item).getValue("role") instanceof String)) {
+                userIds[i] = ((JsonObject) item).getInteger("user_id");
+                roles[i] = ((JsonObject) item).getString("role");
+            } else {
+                sendError(ctx, 400, "Item " + i + " must be a user_id or an object with a numeric user_id and a string role");
+                return;
+            }
+            if (roleMode == Roles.REQUIRED && roles[i] == null) {
+                sendError(ctx, 400, "Item " + i + " is missing role");
+                return;
+            }
+        }
+        if (roleMode == Roles.REQUIRED && Arrays.stream(userIds).distinct().count() != userIds.length) {
+            sendError(ctx, 400, "Each user_id may appear only once");
+            return;
+        }
+
+        dbClient.preparedQuery(cte + "\n" + BULK_RESULT)
+            .execute(roleMode == Roles.IGNORED
+                ? Tuple.of(teamId).addArrayOfInteger(userIds)
+                : Tuple.of(teamId).addArrayOfInteger(userIds).addArrayOfString(roles))
+            .onSuccess(rows -> {
+                if (rows.size() == 0) {
+                    sendError(ctx, 404, "Team not found");
+                    return;
+                }
+                JsonArray members = new JsonArray();
+                JsonArray changed = new JsonArray();
+                for (Row row : rows) {
+                    Integer userId = row.getInteger("user_id");
+                    if (userId == null) {
+                        continue;
+                    }
+                    if (row.getString("change") != null) {
+                        changed.add(userId);
+                    }
+                    if (!"removed".equals(row.getString("change"))) {
+                        members.add(new JsonObject()
+                            .put("id", userId)
+                            .put("name", row.getString("full_name"))
+                            .put("email", row.getString("email"))
+                            .put("role", row.getString("role")));
+                    }
+                }
+                JsonArray skipped = new JsonArray();
+                Arrays.stream(userIds).distinct().filter(id -> !changed.contains(id)).forEach(skipped::add);
+                if (!changed.isEmpty()) {
+                    changeEvents.teamMembers(change, teamId, changed);
+                }
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject()
+                        .put("team_id", teamId)
+                        .put(change, changed)
+                        .put("skipped", skipped)
+                        .put("members", members)
+                        .encode());
+            })
+            .onFailure(err -> {
+                log.error("bulk membership change failed", kv("team_id", teamId), kv("change", change),
+                    kv("items", userIds.length), err);
+                ctx.fail(500, err);
+            });
+    }
+
     public void updateTeamMemberRole(RoutingContext ctx) {
         String teamIdParam = ctx.pathParam("team_id");
         String userIdParam = ctx.pathParam("user_id");
@@ -330,6 +527,7 @@ public class TeamController {
                             .setStatusCode(404)
                             .end(new JsonObject().put("error", "Member not found").encode());
                     } else {
+                        changeEvents.teamMembers("updated", teamId, new JsonArray().add(userId));
                         ctx.response()
                             .putHeader("Content-Type", "application/json")
                             .end(rows.iterator().next().toJson().encode());
@@ -367,6 +565,7 @@ public class TeamController {
                             .setStatusCode(404)
                             .end(new JsonObject().put("error", "Member not found").encode());
                     } else {
+                        changeEvents.teamMembers("removed", teamId, new JsonArray().add(userId));
                         ctx.response()
                             .setStatusCode(204)
                             .end();
@@ -412,39 +611,29 @@ public class TeamController {
     }
 
     public void getUserTeams(RoutingContext ctx) {
-        System.out.println("--- START getUserTeams ---");
         String username = ctx.request().getParam("username");
-        System.out.println("Username parameter: " + username);
         
-        if (username == null || username.isEmpty()) {
-            System.out.println("Username parameter missing");
+        if ((username == null || username.isEmpty()) && ctx.user() == null) {
             ctx.response().setStatusCode(400).end("Username parameter is required");
             return;
         }
     
-        System.out.println("Executing user query...");
-        dbClient.preparedQuery("SELECT user_id FROM users WHERE full_name = $1")
-            .execute(Tuple.of(username))
-            .onSuccess(userRes -> {
-                System.out.println("User query completed. Rows: " + userRes.size());
-                
-                if (userRes.size() == 0) {
-                    System.out.println("No user found with username: " + username);
+        userCache.resolve(ctx, username)
+            .onSuccess(user -> {
+                if (user == null) {
+                    log.debug("user not found", kv("username", username));
                     ctx.response().setStatusCode(404).end("User not found");
                     return;
                 }
                 
-                int userId = userRes.iterator().next().getInteger("user_id");
-                System.out.println("Found user_id: " + userId);
-                
-                System.out.println("Executing teams query...");
+                int userId = user.userId();
                 dbClient.preparedQuery(
                     "SELECT t.team_id, t.name, t.description, tm.role " +
                     "FROM teams t JOIN team_members tm ON t.team_id = tm.team_id " +
                     "WHERE tm.user_id = $1")
                     .execute(Tuple.of(userId))
                     .onSuccess(teamRes -> {
-                        System.out.println("Teams query completed. Rows: " + teamRes.size());
+                        log.debug("user teams found", kv("user_id", userId), kv("rows", teamRes.size()));
                         JsonArray teams = new JsonArray();
                         teamRes.forEach(row -> teams.add(row.toJson()));
                         ctx.response()
@@ -452,12 +641,12 @@ public class TeamController {
                             .end(teams.encode());
                     })
                     .onFailure(err -> {
-                        System.err.println("Teams query failed: " + err.getMessage());
+                        log.error("user teams query failed", kv("user_id", userId), err);
                         ctx.response().setStatusCode(500).end("Database error");
                     });
             })
             .onFailure(err -> {
-                System.err.println("User query failed: " + err.getMessage());
+                log.error("user lookup failed", kv("username", username), err);
                 ctx.response().setStatusCode(500).end("Database error");
             });
     }
@@ -465,16 +654,11 @@ public class TeamController {
     // Add this new handler to your router
 
     public void getTeamMembers(RoutingContext ctx) {
-        // Debug incoming request
-        System.out.println("Received request for team members. Path params: " + ctx.pathParams());
-        
         try {
             // 1. Validate team_id
             String teamIdParam = ctx.pathParam("team_id");
-            System.out.println("Raw team_id parameter: " + teamIdParam);
             
             if (teamIdParam == null || teamIdParam.isEmpty()) {
-                System.err.println("Missing team_id parameter");
                 sendError(ctx, 400, "Missing team_id parameter");
                 return;
             }
@@ -483,15 +667,12 @@ public class TeamController {
             int teamId;
             try {
                 teamId = Integer.parseInt(teamIdParam);
-                System.out.println("Parsed team_id: " + teamId);
             } catch (NumberFormatException e) {
-                System.err.println("Invalid team_id format: " + teamIdParam);
                 sendError(ctx, 400, "Invalid team_id. Must be a number.");
                 return;
             }
     
             // 3. Query database
-            System.out.println("Querying database for team_id: " + teamId);
             dbClient.preparedQuery("""
                 SELECT 
                     u.user_id as id,
@@ -505,10 +686,9 @@ public class TeamController {
                 """)
                 .execute(Tuple.of(teamId))
                 .onSuccess(rows -> {
-                    System.out.println("Found " + rows.size() + " members");
+                    log.debug("team members found", kv("team_id", teamId), kv("rows", rows.size()));
                     
                     if (rows.size() == 0) {
-                        System.out.println("No members found for team_id: " + teamId);
                         ctx.response()
                             .setStatusCode(404)
                             .end(new JsonObject()
@@ -526,24 +706,23 @@ public class TeamController {
                             .put("role", row.getString("role")));
                     });
                     
-                    System.out.println("Sending response for team_id: " + teamId);
                     ctx.response()
                         .putHeader("Content-Type", "application/json")
                         .end(members.encode());
                 })
                 .onFailure(err -> {
-                    System.err.println("Database error for team_id " + teamId + ": " + err.getMessage());
+                    log.error("team members query failed", kv("team_id", teamId), err);
                     sendError(ctx, 500, "Database error: " + err.getMessage());
                 });
     
         } catch (Exception e) {
-            System.err.println("Unexpected error: " + e.getMessage());
+            log.error("team members failed", e);
             sendError(ctx, 500, "Internal server error");
         }
     }
     
     private void sendError(RoutingContext ctx, int statusCode, String message) {
-        System.err.println("Sending error: " + statusCode + " - " + message);
+        log.debug("sending error", kv("status", statusCode), kv("error", message));
         ctx.response()
             .setStatusCode(statusCode)
             .end(new JsonObject().put("error", message).encode());
@@ -0,0 +1,172 @@
+package com.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Bounded, expiring cache of full_name -> (user_id, role).
+ *
+ * Shared by login and the per-user endpoints so that a cache hit saves the
+ * "SELECT user_id FROM users WHERE full_name = $1" round trip (and its wait for
+ * a pooled connection). Entries expire after USER_CACHE_TTL_SECONDS and the
+ * least recently used entry is evicted past USER_CACHE_MAX_SIZE. Unknown names
+ * are never cached. UserController invalidates entries on create/update/delete, and
+ * ChangeNotifier does the same for writes made on other nodes.
+ */
+public class UserCache {
+
+    public static final class CachedUser {
+        final int userId;
+        final String role;
+        final long expiresAt;
+
+        CachedUser(int userId, String role, long expiresAt) {
+            this.userId = userId;
+            this.role = role;
+            this.expiresAt = expiresAt;
+        }
+
+        public int userId() {
+            return userId;
+        }
+
+        public String role() {
+            return role;
+        }
+    }
+
+    private final PgPool dbClient;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, CachedUser> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // Bumped by every invalidation so an in-flight lookup cannot re-cache a stale row
+    private long generation;
+
+    public UserCache(PgPool dbClient) {
+        this(dbClient,
+            DatabasePool.envInt("USER_CACHE_MAX_SIZE", 10_000),
+            DatabasePool.envInt("USER_CACHE_TTL_SECONDS", 300) * 1000L);
+    }
+
+    UserCache(PgPool dbClient, int maxSize, long ttlMillis) {
+        this.dbClient = dbClient;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /** Resolves a full_name, from cache or the users table; completes with null if no such user. */
+    public Future<CachedUser> lookup(String fullName) {
+        CachedUser cached = get(fullName);
+        if (cached != null) {
+            hits.increment();
+            return Future.succeededFuture(cached);
+        }
+        misses.increment();
+        long lookupGeneration = generation();
+        return dbClient.preparedQuery("SELECT user_id, role FROM users WHERE full_name = $1")
+            .execute(Tuple.of(fullName))
+            .map(rows -> {
+                if (rows.size() == 0) {
+                    return null;
+                }
+                Row row = rows.iterator().next();
+                CachedUser user = new CachedUser(row.getInteger("user_id"), row.getString("role"),
+                    System.currentTimeMillis() + ttlMillis);
+                synchronized (this) {
+                    if (generation == lookupGeneration) {
+                        store(fullName, user);
+                    }
+                }
+                return user;
+            });
+    }
+
+    /**
+     * Resolves fullName, or the authenticated caller when fullName is empty. The caller's
+     * own name is answered from the verified token without touching the cache or database.
+     */
+    public Future<CachedUser> resolve(RoutingContext ctx, String fullName) {
+        Integer tokenUserId = SessionTokens.userId(ctx);
+        if (tokenUserId != null && (fullName == null || fullName.isEmpty()
+                || fullName.equals(ctx.user().get("full_name")))) {
+            return Future.succeededFuture(new CachedUser(tokenUserId, SessionTokens.role(ctx), Long.MAX_VALUE));
+        }
+        return lookup(fullName);
+    }
+
+    public synchronized CachedUser put(String fullName, int userId, String role) {
+        CachedUser user = new CachedUser(userId, role, System.currentTimeMillis() + ttlMillis);
+        store(fullName, user);
+        return user;
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    private void store(String fullName, CachedUser user) {
+        entries.put(fullName, user);
+        while (entries.size() > maxSize) {
+            Iterator<CachedUser> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private synchronized CachedUser get(String fullName) {
+        CachedUser user = entries.get(fullName);
+        if (user != null && user.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(fullName);
+            return null;
+        }
+        return user;
+    }
+
+    public synchronized void invalidate(String fullName) {
+        generation++;
+        if (fullName != null) {
+            entries.remove(fullName);
+        }
+    }
+
+    /** Drops every entry; used when change notifications from other nodes may have been missed. */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /** Drops every name mapped to this user (the name itself may have just changed). */
+    public synchronized void invalidateUser(int userId) {
+        generation++;
+        entries.values().removeIf(user -> user.userId == userId);
+    }
+
+    public JsonObject stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new JsonObject()
+            .put("size", size)
+            .put("max_size", maxSize)
+            .put("ttl_seconds", ttlMillis / 1000)
+            .put("hits", hitCount)
+            .put("misses", missCount)
+            .put("evictions", evictions.sum())
+            .put("hit_ratio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+    }
+}
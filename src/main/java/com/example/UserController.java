@@ -1,67 +1,112 @@
     package com.example;
 
-    import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Tuple;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 
     public class UserController {
+    private static final Logger log = LoggerFactory.getLogger(UserController.class);
+
+    // Must match the SELECT list of getAllUsers/exportUsers
+    private static final RowJsonWriter USER_JSON = RowJsonWriter.forColumns("user_id", "full_name", "email", "role");
+
     private final PgPool dbClient;
+    private final UserCache userCache;
+    private final PasswordHasher passwordHasher;
+    private final ChangeNotifier changeNotifier;
 
-    public UserController(PgPool dbClient) {
+    public UserController(PgPool dbClient, UserCache userCache, PasswordHasher passwordHasher,
+                          ChangeNotifier changeNotifier) {
     this.dbClient = dbClient;
+    this.userCache = userCache;
+    this.passwordHasher = passwordHasher;
+    this.changeNotifier = changeNotifier;
     }
 
     public void getAllUsers(RoutingContext ctx) {
         // Get role parameter from query
         String role = ctx.request().getParam("role");
+
+        Pagination page;
+        try {
+            page = Pagination.fromRequest(ctx);
+        } catch (IllegalArgumentException e) {
+            Pagination.sendBadRequest(ctx, e);
+            return;
+        }
         
         String query;
         Tuple parameters;
         
         if (role != null && !role.isEmpty()) {
             // Filter by role if parameter exists
-            query = "SELECT user_id, full_name, email, role FROM users WHERE role = $1 ORDER BY user_id";
-            parameters = Tuple.of(role);
+            query = "SELECT user_id, full_name, email, role FROM users WHERE role = $1 AND user_id > $2 ORDER BY user_id LIMIT $3";
+            parameters = Tuple.of(role, page.after(), page.fetchSize());
         } else {
             // Get all users if no filter
-            query = "SELECT user_id, full_name, email, role FROM users ORDER BY user_id";
-            parameters = Tuple.tuple();
+            query = "SELECT user_id, full_name, email, role FROM users WHERE user_id > $1 ORDER BY user_id LIMIT $2";
+            parameters = Tuple.of(page.after(), page.fetchSize());
         }
         
         dbClient.preparedQuery(query)
             .execute(parameters)
-            .onSuccess(rows -> {
-                JsonArray users = new JsonArray();
-                rows.forEach(row -> users.add(row.toJson()));
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(users.encode());
-            })
+            .onSuccess(rows -> RowJsonWriter.send(ctx.response(), page.toPage(rows, "user_id", USER_JSON)))
             .onFailure(err -> {
-                System.err.println("Database error: " + err.getMessage());
+                log.error("list users failed", err);
                 ctx.fail(500, err);
             });
     }
 
+    public void exportUsers(RoutingContext ctx) {
+        RowStreamer.stream(dbClient, ctx,
+            "SELECT user_id, full_name, email, role FROM users ORDER BY user_id",
+            Tuple.tuple(), USER_JSON);
+    }
+
     public void createUser(RoutingContext ctx) {
     JsonObject user = ctx.getBodyAsJson();
-    dbClient.preparedQuery(
-        "INSERT INTO users (full_name, email, password, role) VALUES ($1, $2, $3, $4) RETURNING user_id, full_name, email, role")
-        .execute(Tuple.of(
-            user.getString("full_name"),
-            user.getString("email"),
-            user.getString("password"),
-            user.getString("role")))
+    String password = user == null ? null : user.getString("password");
+    if (password == null || password.isBlank()) {
+        ctx.response()
+            .setStatusCode(400)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("error", "Password is required").encode());
+        return;
+    }
+    // Only the bcrypt hash is stored; hashing runs on the bounded bcrypt pool
+    passwordHasher.hash(password)
+        .compose(hash -> dbClient.preparedQuery(
+            "INSERT INTO users (full_name, email, password, role) VALUES ($1, $2, $3, $4) RETURNING user_id, full_name, email, role")
+            .execute(Tuple.of(
+                user.getString("full_name"),
+                user.getString("email"),
+                hash,
+                user.getString("role"))))
         .onSuccess(rows -> {
+            JsonObject created = rows.iterator().next().toJson();
+            userCache.invalidate(user.getString("full_name"));
+            changeNotifier.user("created", created.getInteger("user_id"), user.getString("full_name"));
             ctx.response()
                 .setStatusCode(201)
                 .putHeader("Content-Type", "application/json")
-                .end(rows.iterator().next().toJson().encode());
+                .end(created.encode());
         })
-        .onFailure(err -> ctx.fail(500, err));
+        .onFailure(err -> {
+            if (err instanceof PasswordHasher.Overloaded) {
+                ctx.response()
+                    .setStatusCode(503)
+                    .putHeader("Retry-After", "1")
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("error", err.getMessage()).encode());
+                return;
+            }
+            ctx.fail(500, err);
+        });
     }
 
     public void updateUser(RoutingContext ctx) {
@@ -88,6 +133,9 @@ import io.vertx.sqlclient.Tuple;
                 if (rows.size() == 0) {
                     ctx.response().setStatusCode(404).end("User not found");
                 } else {
+                    userCache.invalidateUser(userId);
+                    userCache.invalidate(user.getString("full_name"));
+                    changeNotifier.user("updated", userId, user.getString("full_name"));
                     ctx.response()
                         .putHeader("Content-Type", "application/json")
                         .end(rows.iterator().next().toJson().encode());
@@ -123,13 +171,15 @@ import io.vertx.sqlclient.Tuple;
                         .setStatusCode(404)
                         .end("User not found");
                 } else {
+                    userCache.invalidateUser(userId);
+                    changeNotifier.user("deleted", userId, null);
                     ctx.response()
                         .setStatusCode(204)
                         .end();
                 }
             })
             .onFailure(err -> {
-                System.err.println("Database error: " + err.getMessage()); // Log the actual error
+                log.error("delete user failed", err);
                 ctx.response()
                     .setStatusCode(500)
                     .end("Database operation failed: " + err.getMessage()); // Return specific error
@@ -0,0 +1,50 @@
+-- Tables as they existed before migrations were tracked; IF NOT EXISTS leaves
+-- existing databases untouched and provisions empty ones.
+
+CREATE TABLE IF NOT EXISTS users (
+    user_id   SERIAL PRIMARY KEY,
+    full_name TEXT NOT NULL,
+    email     TEXT,
+    password  TEXT NOT NULL,
+    role      TEXT
+);
+
+CREATE TABLE IF NOT EXISTS projects (
+    project_id         SERIAL PRIMARY KEY,
+    name               TEXT NOT NULL,
+    description        TEXT,
+    status             TEXT,
+    deadline           DATE,
+    project_manager_id INTEGER REFERENCES users (user_id) ON DELETE SET NULL,
+    team_id            INTEGER,
+    created_at         TIMESTAMP DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS teams (
+    team_id     SERIAL PRIMARY KEY,
+    name        TEXT NOT NULL,
+    description TEXT,
+    project_id  INTEGER REFERENCES projects (project_id) ON DELETE SET NULL,
+    created_at  TIMESTAMP DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS team_members (
+    team_id INTEGER NOT NULL REFERENCES teams (team_id) ON DELETE CASCADE,
+    user_id INTEGER NOT NULL REFERENCES users (user_id) ON DELETE CASCADE,
+    role    TEXT DEFAULT 'Member',
+    PRIMARY KEY (team_id, user_id)
+);
+
+CREATE TABLE IF NOT EXISTS tasks (
+    task_id       SERIAL PRIMARY KEY,
+    title         TEXT NOT NULL,
+    description   TEXT,
+    status        TEXT DEFAULT 'Pending',
+    priority      TEXT,
+    deadline      DATE,
+    project_id    INTEGER REFERENCES projects (project_id) ON DELETE CASCADE,
+    assigned_to   INTEGER REFERENCES users (user_id) ON DELETE SET NULL,
+    document_path TEXT,
+    created_at    TIMESTAMP DEFAULT now(),
+    updated_at    TIMESTAMP DEFAULT now()
+);
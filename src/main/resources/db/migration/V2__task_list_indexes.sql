@@ -0,0 +1,8 @@
+-- GET /api/tasks filters and sorts (TaskQuery): each index is (column, task_id)
+-- so a filter or a keyset page on that column is a single range scan.
+
+CREATE INDEX IF NOT EXISTS idx_tasks_status_task_id ON tasks (status, task_id);
+CREATE INDEX IF NOT EXISTS idx_tasks_assigned_to_task_id ON tasks (assigned_to, task_id);
+CREATE INDEX IF NOT EXISTS idx_tasks_project_id_task_id ON tasks (project_id, task_id);
+CREATE INDEX IF NOT EXISTS idx_tasks_deadline_task_id ON tasks (deadline, task_id);
+CREATE INDEX IF NOT EXISTS idx_tasks_created_at_task_id ON tasks (created_at, task_id);
@@ -0,0 +1,15 @@
+-- Lookups the controllers run on every login, dashboard and document listing.
+
+-- Login and UserCache: WHERE full_name = $1
+CREATE INDEX IF NOT EXISTS idx_users_full_name ON users (full_name);
+-- GET /api/users?role=: WHERE role = $1 AND user_id > $2 ORDER BY user_id
+CREATE INDEX IF NOT EXISTS idx_users_role_user_id ON users (role, user_id);
+-- my_teams and team dashboards: WHERE tm.user_id = $1; the primary key leads with team_id
+CREATE INDEX IF NOT EXISTS idx_team_members_user_id ON team_members (user_id, team_id);
+-- Teams of a project: WHERE project_id = $1 ORDER BY name
+CREATE INDEX IF NOT EXISTS idx_teams_project_id ON teams (project_id, name);
+-- Dashboard join on p.team_id and the manager's project list
+CREATE INDEX IF NOT EXISTS idx_projects_team_id ON projects (team_id);
+CREATE INDEX IF NOT EXISTS idx_projects_project_manager_id ON projects (project_manager_id);
+-- Document listings: WHERE document_path IS NOT NULL; only the few tasks with a document are indexed
+CREATE INDEX IF NOT EXISTS idx_tasks_with_document ON tasks (task_id) WHERE document_path IS NOT NULL;
@@ -0,0 +1,26 @@
+-- Ordinal sort keys for the kanban board and project task lists. Generated, so
+-- every existing INSERT/UPDATE keeps them current without knowing they exist.
+-- Status order keeps the original CASE (Not Started, In Progress, Completed,
+-- everything else) and splits "everything else" into its known values; the
+-- column labels in TaskController.BOARD_COLUMNS follow these ranks.
+
+ALTER TABLE tasks
+    ADD COLUMN IF NOT EXISTS status_rank SMALLINT GENERATED ALWAYS AS (
+        CASE status
+            WHEN 'Not Started' THEN 1
+            WHEN 'In Progress' THEN 2
+            WHEN 'Completed' THEN 3
+            WHEN 'Pending' THEN 4
+            WHEN 'Done' THEN 5
+            ELSE 6
+        END) STORED,
+    ADD COLUMN IF NOT EXISTS priority_rank SMALLINT GENERATED ALWAYS AS (
+        CASE priority
+            WHEN 'High' THEN 1
+            WHEN 'Medium' THEN 2
+            WHEN 'Low' THEN 3
+            ELSE 4
+        END) STORED;
+
+-- Board columns and project task lists: an index range per (project, status), already in display order
+CREATE INDEX IF NOT EXISTS idx_tasks_board ON tasks (project_id, status_rank, priority_rank, task_id);
@@ -0,0 +1,41 @@
+-- Content-addressed document storage (see BlobStore). A blob is stored once under
+-- uploads/blobs/<aa>/<bb>/<sha256> and tasks.document_path points at it as
+-- 'blobs/<aa>/<bb>/<sha256>'. ref_count is the number of tasks pointing at the
+-- blob and is maintained here, by trigger, so cascaded deletes count too.
+-- Paths from before this migration (flat names in uploads/) are not counted.
+
+CREATE TABLE IF NOT EXISTS document_blobs (
+    sha256     TEXT PRIMARY KEY,
+    size       BIGINT NOT NULL,
+    ref_count  INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    -- When ref_count last dropped; garbage collection waits a grace period from here
+    released_at TIMESTAMP
+);
+
+-- Garbage collection: unreferenced blobs, longest unreferenced first
+CREATE INDEX IF NOT EXISTS idx_document_blobs_unreferenced
+    ON document_blobs ((COALESCE(released_at, created_at))) WHERE ref_count = 0;
+
+-- The client's file name, for downloads; the stored name is now the hash
+ALTER TABLE tasks ADD COLUMN IF NOT EXISTS document_name TEXT;
+
+CREATE OR REPLACE FUNCTION count_document_blob_refs() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.document_path IS NOT DISTINCT FROM NEW.document_path THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.document_path LIKE 'blobs/%' THEN
+        UPDATE document_blobs SET ref_count = ref_count - 1, released_at = now() WHERE sha256 = split_part(OLD.document_path, '/', 4);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.document_path LIKE 'blobs/%' THEN
+        UPDATE document_blobs SET ref_count = ref_count + 1 WHERE sha256 = split_part(NEW.document_path, '/', 4);
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS tasks_document_blob_refs ON tasks;
+CREATE TRIGGER tasks_document_blob_refs
+    AFTER INSERT OR DELETE OR UPDATE OF document_path ON tasks
+    FOR EACH ROW EXECUTE FUNCTION count_document_blob_refs();
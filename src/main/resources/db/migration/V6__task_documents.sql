@@ -0,0 +1,50 @@
+-- Any number of documents per task (see TaskDocumentController), with the
+-- metadata captured once at upload. tasks.document_path/document_name remain as
+-- the task's most recently added document, for the single-document endpoints.
+
+CREATE TABLE IF NOT EXISTS task_documents (
+    document_id  SERIAL PRIMARY KEY,
+    task_id      INTEGER NOT NULL REFERENCES tasks (task_id) ON DELETE CASCADE,
+    -- Relative to uploads/; 'blobs/<aa>/<bb>/<sha256>' for content-addressed files
+    storage_path TEXT NOT NULL,
+    file_name    TEXT NOT NULL,
+    -- size, content_type and sha256 are NULL only for documents carried over from
+    -- before this migration that predate content addressing
+    content_type TEXT,
+    size         BIGINT,
+    sha256       TEXT,
+    uploaded_by  INTEGER REFERENCES users (user_id) ON DELETE SET NULL,
+    uploaded_at  TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- Documents of a task, newest first; the listing of all documents walks the primary key backwards
+CREATE INDEX IF NOT EXISTS idx_task_documents_task_id ON task_documents (task_id, document_id DESC);
+
+-- Blobs are referenced from here as well as from tasks.document_path; both count
+CREATE OR REPLACE FUNCTION count_task_document_blob_refs() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' AND OLD.storage_path LIKE 'blobs/%' THEN
+        UPDATE document_blobs SET ref_count = ref_count - 1, released_at = now()
+        WHERE sha256 = split_part(OLD.storage_path, '/', 4);
+    END IF;
+    IF TG_OP = 'INSERT' AND NEW.storage_path LIKE 'blobs/%' THEN
+        UPDATE document_blobs SET ref_count = ref_count + 1 WHERE sha256 = split_part(NEW.storage_path, '/', 4);
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS task_documents_blob_refs ON task_documents;
+CREATE TRIGGER task_documents_blob_refs
+    AFTER INSERT OR DELETE ON task_documents
+    FOR EACH ROW EXECUTE FUNCTION count_task_document_blob_refs();
+
+-- Carry over the one document each task could have had
+INSERT INTO task_documents (task_id, storage_path, file_name, content_type, size, sha256, uploaded_at)
+SELECT t.task_id, t.document_path,
+       COALESCE(t.document_name, regexp_replace(t.document_path, '^.*/', '')),
+       NULL, b.size, b.sha256, COALESCE(t.updated_at, now())
+FROM tasks t
+LEFT JOIN document_blobs b ON t.document_path LIKE 'blobs/%' AND b.sha256 = split_part(t.document_path, '/', 4)
+WHERE t.document_path IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM task_documents d WHERE d.task_id = t.task_id);
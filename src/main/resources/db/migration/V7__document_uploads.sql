@@ -0,0 +1,21 @@
+-- Resumable uploads in progress (see ResumableUploads). Chunks are appended to
+-- uploads/tmp/<upload_id>.part; committed_offset is how much of it is durable.
+-- A PUT holds the upload for lease_until, so two clients never write at once.
+
+CREATE TABLE IF NOT EXISTS document_uploads (
+    upload_id        UUID PRIMARY KEY,
+    task_id          INTEGER NOT NULL REFERENCES tasks (task_id) ON DELETE CASCADE,
+    file_name        TEXT NOT NULL,
+    content_type     TEXT,
+    size             BIGINT NOT NULL CHECK (size > 0),
+    -- Optional hash declared by the client, checked on completion
+    sha256           TEXT,
+    committed_offset BIGINT NOT NULL DEFAULT 0 CHECK (committed_offset BETWEEN 0 AND size),
+    lease_until      TIMESTAMP,
+    created_by       INTEGER REFERENCES users (user_id) ON DELETE SET NULL,
+    created_at       TIMESTAMP NOT NULL DEFAULT now(),
+    updated_at       TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- Expiry of abandoned uploads
+CREATE INDEX IF NOT EXISTS idx_document_uploads_updated_at ON document_uploads (updated_at);
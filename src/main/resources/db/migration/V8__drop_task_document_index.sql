@@ -0,0 +1,4 @@
+-- The document listing this partial index served (V3) now reads task_documents
+-- (V6), and nothing else filters tasks on document_path; stop maintaining it.
+
+DROP INDEX IF EXISTS idx_tasks_with_document;
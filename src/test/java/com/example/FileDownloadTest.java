@@ -0,0 +1,93 @@
+package com.example;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+import junit.framework.TestCase;
+
+/**
+ * FileDownload.parseRanges: null means ignore the header, an empty list means 416.
+ */
+public class FileDownloadTest extends TestCase {
+
+    private static String ranges(String header, long size) {
+        List<long[]> ranges = FileDownload.parseRanges(header, size);
+        if (ranges == null) {
+            return null;
+        }
+        StringJoiner out = new StringJoiner(",");
+        for (long[] r : ranges) {
+            out.add(r[0] + "-" + r[1]);
+        }
+        return out.toString();
+    }
+
+    public void testSingleRanges() {
+        assertEquals("0-99", ranges("bytes=0-99", 1000));
+        assertEquals("0-0", ranges("bytes=0-0", 1000));
+        assertEquals("500-999", ranges("bytes=500-999", 1000));
+        assertEquals("10-20", ranges("  BYTES=10-20 ", 1000));
+    }
+
+    public void testOpenEndedAndPastTheEnd() {
+        assertEquals("500-999", ranges("bytes=500-", 1000));
+        assertEquals("999-999", ranges("bytes=999-", 1000));
+        assertEquals("900-999", ranges("bytes=900-5000", 1000));
+        assertEquals("", ranges("bytes=1000-", 1000));
+        assertEquals("", ranges("bytes=3000000-", 1000));
+        assertEquals("", ranges("bytes=1000-1999", 1000));
+    }
+
+    public void testSuffixRanges() {
+        assertEquals("900-999", ranges("bytes=-100", 1000));
+        assertEquals("0-999", ranges("bytes=-1000", 1000));
+        assertEquals("0-999", ranges("bytes=-5000", 1000));
+        assertEquals("", ranges("bytes=-0", 1000));
+        assertEquals("0-99", ranges("bytes=-0,0-99", 1000));
+    }
+
+    public void testOverlappingAndAdjacentRangesMerge() {
+        assertEquals("0-199", ranges("bytes=0-99,50-199", 1000));
+        assertEquals("0-199", ranges("bytes=0-99,100-199", 1000));
+        assertEquals("0-99,101-199", ranges("bytes=0-99,101-199", 1000));
+        assertEquals("0-99,500-599", ranges("bytes=500-599,0-99", 1000));
+        assertEquals("0-999", ranges("bytes=0-10,5-,-1", 1000));
+        assertEquals("0-99", ranges("bytes=0-99,2000-", 1000));
+    }
+
+    public void testMaxRanges() {
+        StringJoiner allowed = new StringJoiner(",", "bytes=", "");
+        for (int i = 0; i < FileDownload.MAX_RANGES; i++) {
+            allowed.add(i * 10 + "-" + i * 10);
+        }
+        assertEquals(FileDownload.MAX_RANGES, FileDownload.parseRanges(allowed.toString(), 1000).size());
+        assertNull(ranges(allowed + ",900-900", 1000));
+    }
+
+    public void testMalformedHeadersAreIgnored() {
+        assertNull(ranges("items=0-99", 1000));
+        assertNull(ranges("bytes", 1000));
+        assertNull(ranges("bytes=100", 1000));
+        assertNull(ranges("bytes=abc-def", 1000));
+        assertNull(ranges("bytes=99-0", 1000));
+        assertNull(ranges("bytes=--5", 1000));
+        assertNull(ranges("bytes=0-99,x", 1000));
+        assertNull(ranges("bytes=0-99999999999999999999", 1000));
+    }
+
+    public void testEmptyFile() {
+        assertEquals("", ranges("bytes=0-", 0));
+        assertEquals("", ranges("bytes=0-0", 0));
+        assertEquals("", ranges("bytes=-100", 0));
+        assertNull(ranges("bytes=5-1", 0));
+    }
+
+    public void testContentTypeFromTheExtension() {
+        assertEquals("application/pdf", FileDownload.guessContentType("Report #3.PDF"));
+        assertEquals("image/png", FileDownload.guessContentType("screen.shot.png"));
+        assertEquals("application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            FileDownload.guessContentType("spec.docx"));
+        assertEquals("application/octet-stream", FileDownload.guessContentType("design.psd"));
+        assertEquals("application/octet-stream", FileDownload.guessContentType("Makefile"));
+    }
+}
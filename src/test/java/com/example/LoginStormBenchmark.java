@@ -0,0 +1,129 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Login throughput and latency under saturation, and what it does to an unrelated route.
+ *
+ * A probe hits GET / every 10 ms, first with no other load and then while N clients
+ * log in back to back. If bcrypt stays off the event loop the probe percentiles barely
+ * move while logins queue (and eventually get 503) on the bcrypt pool.
+ *
+ * Not a unit test; run manually against a running server:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.LoginStormBenchmark \
+ *       -Dexec.args="http://localhost:8080 alice pw 32 15"
+ */
+public class LoginStormBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String base = args.length > 0 ? args[0] : "http://localhost:8080";
+        String fullName = args.length > 1 ? args[1] : "alice";
+        String password = args.length > 2 ? args[2] : "pw";
+        int clients = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 15;
+
+        Vertx vertx = Vertx.vertx();
+        HttpClient http = vertx.createHttpClient(new HttpClientOptions()
+            .setDefaultHost(java.net.URI.create(base).getHost())
+            .setDefaultPort(java.net.URI.create(base).getPort())
+            .setMaxPoolSize(clients + 4)
+            .setKeepAlive(true));
+        Buffer body = new JsonObject().put("full_name", fullName).put("password", password).toBuffer();
+
+        List<Long> idle = probe(vertx, http, seconds * 1000L / 3);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Long> loginLatencies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch stopped = new CountDownLatch(clients);
+        long stormStart = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            login(http, body, running, ok, rejected, failed, loginLatencies, stopped);
+        }
+        List<Long> storm = probe(vertx, http, seconds * 1000L);
+        running.set(false);
+        stopped.await();
+        double elapsed = (System.nanoTime() - stormStart) / 1e9;
+
+        System.out.printf("logins: %d ok (%.1f/s), %d rejected with 503, %d other failures, %d clients%n",
+            ok.get(), ok.get() / elapsed, rejected.get(), failed.get(), clients);
+        print("login latency", loginLatencies);
+        print("GET / idle", idle);
+        print("GET / during storm", storm);
+        vertx.close();
+    }
+
+    private static void login(HttpClient http, Buffer body, AtomicBoolean running, AtomicInteger ok,
+                              AtomicInteger rejected, AtomicInteger failed, List<Long> latencies, CountDownLatch stopped) {
+        if (!running.get()) {
+            stopped.countDown();
+            return;
+        }
+        long start = System.nanoTime();
+        http.request(new RequestOptions().setMethod(HttpMethod.POST).setURI("/login")
+                .putHeader("Content-Type", "application/json"))
+            .compose(req -> req.send(body))
+            .compose(resp -> resp.body().map(b -> resp.statusCode()))
+            .onComplete(ar -> {
+                if (ar.succeeded() && ar.result() == 200) {
+                    ok.incrementAndGet();
+                    latencies.add(System.nanoTime() - start);
+                } else if (ar.succeeded() && ar.result() == 503) {
+                    rejected.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+                login(http, body, running, ok, rejected, failed, latencies, stopped);
+            });
+    }
+
+    private static List<Long> probe(Vertx vertx, HttpClient http, long durationMs) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        long end = System.currentTimeMillis() + durationMs;
+        CountDownLatch done = new CountDownLatch(1);
+        vertx.setPeriodic(10, id -> {
+            if (System.currentTimeMillis() >= end) {
+                vertx.cancelTimer(id);
+                done.countDown();
+                return;
+            }
+            long start = System.nanoTime();
+            http.request(HttpMethod.GET, "/")
+                .compose(req -> req.send().compose(resp -> resp.body()))
+                .onSuccess(b -> latencies.add(System.nanoTime() - start));
+        });
+        done.await();
+        Thread.sleep(200);
+        return latencies;
+    }
+
+    private static void print(String name, List<Long> latencies) {
+        List<Long> sorted;
+        synchronized (latencies) {
+            sorted = new ArrayList<>(latencies);
+        }
+        if (sorted.isEmpty()) {
+            System.out.printf("%-20s no samples%n", name);
+            return;
+        }
+        Collections.sort(sorted);
+        System.out.printf("%-20s n=%6d  p50=%8.2f ms  p99=%8.2f ms  max=%8.2f ms%n", name, sorted.size(),
+            sorted.get(sorted.size() / 2) / 1e6, sorted.get((int) (sorted.size() * 0.99)) / 1e6,
+            sorted.get(sorted.size() - 1) / 1e6);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example;
+
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.SqlConnection;
+import junit.framework.TestCase;
+
+/**
+ * MeteredConnectionPool.install reaches into vertx-sql-client internals; a version
+ * that moves them makes install() log "pool metrics unavailable" and these fail.
+ */
+public class MeteredConnectionPoolTest extends TestCase {
+    private Vertx vertx;
+
+    @Override
+    protected void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        await(vertx.close());
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    private static double value(Metrics metrics, String series) {
+        for (String line : metrics.render().split("\n")) {
+            if (line.startsWith(series + " ")) {
+                return Double.parseDouble(line.substring(series.length() + 1));
+            }
+        }
+        fail("no " + series + " in the exposition");
+        return -1;
+    }
+
+    public void testInstallMetersThePoolDatabasePoolBuilds() throws Exception {
+        // Nothing listens here, so the acquire goes through the pool and fails to connect
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Metrics metrics = new Metrics();
+        PgPool pool = DatabasePool.create(vertx, DatabasePool.connectOptions().setHost("127.0.0.1").setPort(port), 1,
+            metrics);
+
+        // The gauges are only wired up when install() found and wrapped the pool
+        assertTrue(value(metrics, "pg_pool_connections_max") > 0);
+        try {
+            await(pool.getConnection());
+            fail("connected to a closed port");
+        } catch (ExecutionException expected) {
+            // the refused connection is what gets counted
+        }
+        assertEquals(1.0, value(metrics, "pg_pool_acquire_rejected_total"));
+        assertEquals(1.0, value(metrics, "pg_pool_acquire_duration_seconds_count"));
+        assertEquals(0.0, value(metrics, "pg_pool_in_use"));
+    }
+
+    /** Needs the database named by the DB_* variables; returns early when it is not reachable. */
+    public void testLeaseMovesTheInUseGauge() throws Exception {
+        Metrics metrics = new Metrics();
+        PgPool pool = DatabasePool.create(vertx, 1, metrics);
+        SqlConnection conn;
+        try {
+            conn = await(pool.getConnection());
+        } catch (ExecutionException e) {
+            System.out.println("MeteredConnectionPoolTest: no database, lease test skipped (" + e.getCause() + ")");
+            return;
+        }
+        assertEquals(1.0, value(metrics, "pg_pool_in_use"));
+        assertEquals(1.0, value(metrics, "pg_pool_connections"));
+
+        await(conn.close());
+        assertEquals(0.0, value(metrics, "pg_pool_in_use"));
+        assertEquals(1.0, value(metrics, "pg_pool_acquire_duration_seconds_count"));
+        assertEquals(0.0, value(metrics, "pg_pool_acquire_rejected_total"));
+    }
+}
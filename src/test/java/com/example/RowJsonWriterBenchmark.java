@@ -0,0 +1,68 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.sqlclient.Row;
+
+/**
+ * Allocation and CPU cost of encoding a 1000-row /api/tasks page, old path vs RowJsonWriter.
+ *
+ * Not a unit test; run manually:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.RowJsonWriterBenchmark
+ */
+public class RowJsonWriterBenchmark {
+    private static final String[] COLUMNS =
+        {"task_id", "title", "description", "status", "deadline", "project_id", "assigned_to", "created_at"};
+    private static final int ROWS = 1000;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    public static void main(String[] args) {
+        List<Row> rows = new ArrayList<>(ROWS);
+        for (int i = 1; i <= ROWS; i++) {
+            rows.add(RowJsonWriterTest.row(COLUMNS, i, "task " + i, "a somewhat longer description for task " + i,
+                i % 2 == 0 ? "In Progress" : "Not Started", LocalDate.of(2026, 10, 1 + i % 28), 1 + i % 20, 1 + i % 3,
+                LocalDateTime.of(2026, 10, 17, 3, 15, 21, 153615000)));
+        }
+        RowJsonWriter writer = RowJsonWriter.forColumns(COLUMNS);
+
+        measure("row.toJson() + JsonArray + encode()", () -> {
+            JsonArray tasks = new JsonArray();
+            rows.forEach(row -> tasks.add(row.toJson()));
+            // HttpServerResponse.end(String) copies the String into a Buffer
+            return Buffer.buffer(tasks.encode()).length();
+        });
+        measure("RowJsonWriter into pooled ByteBuf", () -> {
+            ByteBuf out = RowJsonWriter.allocate(ROWS * 160);
+            writer.writeArray(rows, ROWS, out);
+            int length = out.readableBytes();
+            out.release();
+            return length;
+        });
+    }
+
+    private static void measure(String name, java.util.function.IntSupplier encode) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += encode.getAsInt();
+        }
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += encode.getAsInt();
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        System.out.printf("%-40s %8.1f us/page %10d bytes allocated/page  (%d)%n",
+            name, nanos / 1000.0 / ITERATIONS, bytes / ITERATIONS, sink % 10);
+    }
+}
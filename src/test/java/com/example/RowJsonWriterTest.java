@@ -0,0 +1,104 @@
+package com.example;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.JDBCType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.pgclient.impl.RowImpl;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.desc.ColumnDescriptor;
+import io.vertx.sqlclient.impl.RowDesc;
+import junit.framework.TestCase;
+
+/**
+ * RowJsonWriter must produce exactly what row.toJson().encode() produces.
+ */
+public class RowJsonWriterTest extends TestCase {
+
+    static Row row(String[] names, Object... values) {
+        ColumnDescriptor[] columns = Arrays.stream(names).map(name -> new ColumnDescriptor() {
+            public String name() { return name; }
+            public boolean isArray() { return false; }
+            public String typeName() { return "unknown"; }
+            public JDBCType jdbcType() { return JDBCType.OTHER; }
+        }).toArray(ColumnDescriptor[]::new);
+        RowImpl row = new RowImpl(new RowDesc(columns) { });
+        for (Object value : values) {
+            row.addValue(value);
+        }
+        return row;
+    }
+
+    private static String write(RowJsonWriter writer, Row row, boolean fixedShape) {
+        ByteBuf out = Unpooled.buffer();
+        writer.writeRow(row, out, fixedShape);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void assertSameJson(RowJsonWriter writer, Row row) {
+        String expected = row.toJson().encode();
+        assertEquals(expected, write(writer, row, writer.matches(row)));
+        assertEquals(expected, write(writer, row, false));
+    }
+
+    public void testTaskShapedRows() {
+        String[] names = {"task_id", "title", "description", "status", "deadline", "project_id", "assigned_to", "created_at"};
+        RowJsonWriter writer = RowJsonWriter.forColumns(names);
+
+        assertSameJson(writer, row(names, 1, "task 1", "desc", "Pending",
+            LocalDate.of(2026, 10, 18), 2, 3, LocalDateTime.of(2026, 10, 17, 3, 15, 21, 153615000)));
+        assertSameJson(writer, row(names, -42, "", null, "Done", null, null, null,
+            LocalDateTime.of(2026, 1, 2, 0, 0)));
+        assertSameJson(writer, row(names, Integer.MAX_VALUE, "x", "y", "z",
+            LocalDate.of(1, 1, 1), Integer.MIN_VALUE, 0, LocalDateTime.of(2026, 1, 2, 3, 4, 5)));
+    }
+
+    public void testStringEscapes() {
+        String[] names = {"s"};
+        RowJsonWriter writer = RowJsonWriter.forColumns(names);
+        String[] samples = {
+            "plain", "quote\"inside", "back\\slash", "tab\tnew\nline\rcr", "\b\f", "\u0000\u0001\u001f\u007f",
+            "slash/ok", "caf\u00e9 \u00fc\u00f1\u00ee\u00e7\u00f8d\u00e9", "\u65e5\u672c\u8a9e", "emoji \ud83d\ude80 end",
+            "\u2028\u2029", "<script>&amp;</script>"
+        };
+        for (String sample : samples) {
+            assertSameJson(writer, row(names, sample));
+        }
+    }
+
+    public void testTemporalPrecision() {
+        String[] names = {"at"};
+        RowJsonWriter writer = RowJsonWriter.forColumns(names);
+        LocalDateTime base = LocalDateTime.of(2026, 10, 17, 9, 5);
+        int[] nanos = {0, 1, 1000, 1_000_000, 120_000_000, 153_615_000, 999_999_999};
+        for (int nano : nanos) {
+            assertSameJson(writer, row(names, base.withNano(nano)));
+            assertSameJson(writer, row(names, base.withSecond(7).withNano(nano)));
+        }
+        assertSameJson(writer, row(names, LocalDate.of(10000, 1, 1)));
+        assertSameJson(writer, row(names, LocalDateTime.of(-5, 1, 1, 0, 0)));
+    }
+
+    public void testOtherTypesFallBackToCodec() {
+        String[] names = {"a", "b", "c", "d", "e", "f", "g", "h", "i"};
+        RowJsonWriter writer = RowJsonWriter.forColumns(names);
+        assertSameJson(writer, row(names, true, false, 12345678901L, (short) 7, 1.5d, new BigDecimal("10.250"),
+            OffsetDateTime.of(2026, 10, 17, 1, 2, 3, 0, ZoneOffset.ofHours(3)),
+            UUID.fromString("7c7d6ef5-d756-4958-a845-e545979123fe"), new Integer[] {1, 2, null}));
+    }
+
+    public void testRowOfAnotherShapeUsesItsOwnColumnNames() {
+        RowJsonWriter writer = RowJsonWriter.forColumns("task_id", "title");
+        Row row = row(new String[] {"team_id", "na\"me"}, 5, "T5");
+        assertFalse(writer.matches(row));
+        assertSameJson(writer, row);
+    }
+}
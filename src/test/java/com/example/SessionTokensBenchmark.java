@@ -0,0 +1,68 @@
+package com.example;
+
+import java.util.concurrent.CompletableFuture;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Per-request cost of resolving the caller: HS256 token verification vs the
+ * "SELECT ... FROM users WHERE full_name = $1" lookup it replaces.
+ *
+ * Not a unit test; run manually against a database reachable through the usual DB_* variables:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.SessionTokensBenchmark
+ */
+public class SessionTokensBenchmark {
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+    private static final int DB_ITERATIONS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        JWTAuth provider = JWTAuth.create(vertx, new JWTAuthOptions()
+            .addPubSecKey(new PubSecKeyOptions().setAlgorithm("HS256").setBuffer("benchmark-secret")));
+        String token = provider.generateToken(new JsonObject().put("user_id", 1).put("full_name", "alice").put("role", "admin"));
+        TokenCredentials credentials = new TokenCredentials(token);
+
+        measure("JWT verify (HS256)", WARMUP, ITERATIONS, () -> provider.authenticate(credentials));
+
+        PgPool dbClient = DatabasePool.create(vertx, 1, new Metrics());
+        String fullName = args.length > 0 ? args[0] : "alice";
+        measure("users lookup by full_name", DB_ITERATIONS / 5, DB_ITERATIONS, () -> dbClient
+            .preparedQuery("SELECT user_id, role FROM users WHERE full_name = $1")
+            .execute(Tuple.of(fullName)));
+
+        vertx.close();
+    }
+
+    // Sequential: each call waits for the previous one, so the figure is per-request latency
+    private static void measure(String name, int warmup, int iterations, java.util.function.Supplier<Future<?>> call)
+            throws Exception {
+        run(warmup, call);
+        long start = System.nanoTime();
+        run(iterations, call);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-30s %10.2f us/request%n", name, nanos / 1000.0 / iterations);
+    }
+
+    private static void run(int iterations, java.util.function.Supplier<Future<?>> call) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            CompletableFuture<Object> done = new CompletableFuture<>();
+            call.get().onComplete(ar -> {
+                if (ar.failed()) {
+                    done.completeExceptionally(ar.cause());
+                } else {
+                    done.complete(null);
+                }
+            });
+            done.get();
+        }
+    }
+}
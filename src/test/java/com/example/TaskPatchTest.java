@@ -0,0 +1,85 @@
+package com.example;
+
+import java.time.LocalDate;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Tuple;
+import junit.framework.TestCase;
+
+/**
+ * TaskPatch: the field mask picks the SQL text, the tuple binds $1 the task_id
+ * and then the present fields in declaration order.
+ */
+public class TaskPatchTest extends TestCase {
+
+    private static TaskPatch patch(String json) {
+        return TaskPatch.from(new JsonObject(json));
+    }
+
+    private static void assertRejected(String json, String message) {
+        try {
+            patch(json);
+            fail("accepted " + json);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    public void testSqlSetsPresentFieldsInDeclarationOrder() {
+        TaskPatch patch = patch("{\"assigned_to\":3,\"unknown\":1,\"title\":\"Write docs\"}");
+        String sql = TaskPatch.sql(patch.mask());
+        assertTrue(sql, sql.startsWith("UPDATE tasks t SET title = $2, assigned_to = $3, updated_at = now() FROM "));
+        assertTrue(sql, sql.contains("WHERE task_id = $1 FOR UPDATE"));
+        assertFalse(sql, sql.contains("$4"));
+
+        Tuple tuple = patch.tuple(7);
+        assertEquals(3, tuple.size());
+        assertEquals(7, tuple.getValue(0));
+        assertEquals("Write docs", tuple.getValue(1));
+        assertEquals(3, tuple.getValue(2));
+    }
+
+    public void testEveryField() {
+        TaskPatch patch = patch("{\"project_id\":4,\"deadline\":\"2026-11-30\",\"priority\":\"High\","
+            + "\"status\":\"Completed\",\"description\":null,\"title\":\"t\",\"assigned_to\":null}");
+        assertTrue(TaskPatch.sql(patch.mask()).startsWith("UPDATE tasks t SET title = $2, description = $3, status = $4, "
+            + "priority = $5, deadline = $6, project_id = $7, assigned_to = $8, updated_at = now()"));
+
+        Tuple tuple = patch.tuple(1);
+        assertEquals(8, tuple.size());
+        assertNull(tuple.getValue(2));
+        assertEquals("Completed", tuple.getValue(3));
+        assertEquals(LocalDate.of(2026, 11, 30), tuple.getValue(5));
+        assertEquals(4, tuple.getValue(6));
+        assertNull(tuple.getValue(7));
+    }
+
+    public void testEqualMasksShareOneSqlText() {
+        TaskPatch a = patch("{\"status\":\"In Progress\",\"deadline\":null}");
+        TaskPatch b = patch("{\"deadline\":\"2027-01-01\",\"status\":\"Completed\"}");
+        assertEquals(a.mask(), b.mask());
+        assertSame(TaskPatch.sql(a.mask()), TaskPatch.sql(b.mask()));
+        assertTrue(a.touches(TaskPatch.Field.STATUS));
+        assertFalse(a.touches(TaskPatch.Field.TITLE));
+    }
+
+    public void testIdsMustBeWholeNumbersInRange() {
+        assertEquals(2, patch("{\"assigned_to\":2.0}").tuple(1).getValue(1));
+        assertEquals(Integer.MAX_VALUE, patch("{\"project_id\":2147483647}").tuple(1).getValue(1));
+        assertRejected("{\"project_id\":1.9}", "project_id has the wrong type");
+        assertRejected("{\"assigned_to\":2147483648}", "assigned_to has the wrong type");
+        assertRejected("{\"assigned_to\":-2147483649}", "assigned_to has the wrong type");
+        assertRejected("{\"project_id\":99999999999999999999}", "project_id has the wrong type");
+        assertRejected("{\"project_id\":\"1\"}", "project_id has the wrong type");
+    }
+
+    public void testInvalidBodies() {
+        assertRejected("{}", "No updatable field in request body");
+        assertRejected("{\"created_at\":\"2026-01-01\"}", "No updatable field in request body");
+        assertRejected("{\"title\":null}", "title must not be empty");
+        assertRejected("{\"title\":\"  \"}", "title must not be empty");
+        assertRejected("{\"title\":5}", "title has the wrong type");
+        assertRejected("{\"status\":true}", "status has the wrong type");
+        assertRejected("{\"deadline\":\"30/11/2026\"}", "Invalid deadline format. Expected YYYY-MM-DD");
+    }
+}
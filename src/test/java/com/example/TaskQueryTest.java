@@ -0,0 +1,128 @@
+package com.example;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.json.JsonArray;
+import junit.framework.TestCase;
+
+/**
+ * TaskQuery.fromRequest: which SQL a query string compiles to, with which
+ * parameters, and which query strings are refused before any SQL is built.
+ */
+public class TaskQueryTest extends TestCase {
+    private static final String SELECT = "SELECT " + TaskQuery.COLUMNS + " FROM tasks";
+
+    private static TaskQuery query(String... pairs) {
+        MultiMap params = MultiMap.caseInsensitiveMultiMap();
+        for (int i = 0; i < pairs.length; i += 2) {
+            params.add(pairs[i], pairs[i + 1]);
+        }
+        return TaskQuery.fromRequest(params);
+    }
+
+    private static String cursor(String sort, boolean descending, String value, int taskId) {
+        String json = new JsonArray().add(sort).add(descending).add(value).add(taskId).encode();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertRejected(String message, String... pairs) {
+        try {
+            query(pairs);
+            fail("accepted " + Arrays.toString(pairs));
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    public void testDefaults() {
+        TaskQuery query = query();
+        assertEquals(SELECT + " ORDER BY task_id LIMIT $1", query.sql());
+        assertEquals(1, query.params().size());
+        assertEquals(Pagination.DEFAULT_LIMIT + 1, query.params().getValue(0));
+        assertEquals(Pagination.DEFAULT_LIMIT, query.limit());
+    }
+
+    public void testFiltersBecomeBindParameters() {
+        TaskQuery query = query("status", "Completed, In Progress", "assigned_to", "3", "project_id", "1,2",
+            "deadline_from", "2026-01-01", "created_to", "2026-02-28", "limit", "10");
+        assertEquals(SELECT + " WHERE status = ANY($1) AND assigned_to = ANY($2) AND project_id = ANY($3)"
+            + " AND deadline >= $4 AND created_at < $5 ORDER BY task_id LIMIT $6", query.sql());
+        assertEquals(Arrays.asList("Completed", "In Progress"), Arrays.asList((Object[]) query.params().getValue(0)));
+        assertEquals(Arrays.asList(3), Arrays.asList((Object[]) query.params().getValue(1)));
+        assertEquals(Arrays.asList(1, 2), Arrays.asList((Object[]) query.params().getValue(2)));
+        assertEquals(LocalDate.of(2026, 1, 1), query.params().getValue(3));
+        // created_to is inclusive: everything before the next midnight
+        assertEquals(LocalDateTime.of(2026, 3, 1, 0, 0), query.params().getValue(4));
+        assertEquals(11, query.params().getValue(5));
+    }
+
+    public void testSortWhitelist() {
+        assertEquals(SELECT + " ORDER BY task_id DESC LIMIT $1", query("sort", "-task_id").sql());
+        assertEquals(SELECT + " ORDER BY deadline, task_id LIMIT $1", query("sort", "deadline").sql());
+        assertEquals(SELECT + " ORDER BY created_at DESC, task_id DESC LIMIT $1", query("sort", "-created_at").sql());
+
+        String message = "sort must be one of task_id, deadline, created_at (prefix - for descending)";
+        assertRejected(message, "sort", "title");
+        assertRejected(message, "sort", "-");
+        assertRejected(message, "sort", "Deadline");
+        assertRejected(message, "sort", "deadline; DROP TABLE tasks");
+    }
+
+    public void testTaskIdCursors() {
+        TaskQuery legacy = query("after", "42");
+        assertEquals(SELECT + " WHERE task_id > $1 ORDER BY task_id LIMIT $2", legacy.sql());
+        assertEquals(42, legacy.params().getValue(0));
+
+        TaskQuery descending = query("sort", "-task_id", "after", cursor("task_id", true, null, 42));
+        assertEquals(SELECT + " WHERE task_id < $1 ORDER BY task_id DESC LIMIT $2", descending.sql());
+    }
+
+    public void testColumnCursorsCoverTheNulls() {
+        // Ascending: the rest of the non-NULL range, then every NULL deadline
+        TaskQuery ascending = query("status", "Completed", "sort", "deadline",
+            "after", cursor("deadline", false, "2026-11-30", 42));
+        String where = " WHERE status = ANY($1) AND ";
+        String order = " ORDER BY deadline, task_id LIMIT $4";
+        assertEquals("SELECT " + TaskQuery.COLUMNS + " FROM ((" + SELECT + where + "(deadline, task_id) > ($3, $2)" + order
+            + ") UNION ALL (" + SELECT + where + "deadline IS NULL" + order + ")) page" + order, ascending.sql());
+        assertEquals(42, ascending.params().getValue(1));
+        assertEquals(LocalDate.of(2026, 11, 30), ascending.params().getValue(2));
+
+        // Descending past a NULL: the NULLs after it, then every non-NULL
+        TaskQuery descending = query("sort", "-deadline", "after", cursor("deadline", true, null, 7));
+        String descOrder = " ORDER BY deadline DESC, task_id DESC LIMIT $2";
+        assertEquals("SELECT " + TaskQuery.COLUMNS + " FROM ((" + SELECT + " WHERE deadline IS NULL AND task_id < $1"
+            + descOrder + ") UNION ALL (" + SELECT + " WHERE deadline IS NOT NULL" + descOrder + ")) page" + descOrder,
+            descending.sql());
+    }
+
+    public void testInvalidParameters() {
+        assertRejected("limit must be a number", "limit", "ten");
+        assertRejected("limit must be between 1 and " + Pagination.MAX_LIMIT, "limit", "0");
+        assertRejected("limit must be between 1 and " + Pagination.MAX_LIMIT, "limit", "1001");
+        assertRejected("assigned_to must be a number or a comma-separated list of numbers", "assigned_to", "1,x");
+        assertRejected("project_id must be a number or a comma-separated list of numbers", "project_id", "1 OR 1=1");
+        assertRejected("deadline_to must be a date (YYYY-MM-DD)", "deadline_to", "2026-13-01");
+        assertRejected("created_from must be a date (YYYY-MM-DD)", "created_from", "yesterday");
+
+        String[] many = new String[51];
+        Arrays.fill(many, "Completed");
+        assertRejected("status accepts at most 50 values", "status", String.join(",", many));
+    }
+
+    public void testInvalidCursors() {
+        assertRejected("Invalid after cursor", "after", "not-a-cursor");
+        assertRejected("Invalid after cursor", "sort", "deadline", "after", "42");
+        assertRejected("Invalid after cursor", "sort", "deadline", "after", cursor("deadline", false, "someday", 1));
+        assertRejected("Cursor does not belong to this sort order", "sort", "deadline",
+            "after", cursor("created_at", false, "2026-01-01T00:00", 1));
+        assertRejected("Cursor does not belong to this sort order", "sort", "-deadline",
+            "after", cursor("deadline", false, "2026-11-30", 1));
+        assertRejected("Cursor does not belong to this sort order", "after", cursor("deadline", false, null, 1));
+    }
+}